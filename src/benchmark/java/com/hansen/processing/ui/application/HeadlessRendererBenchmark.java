@@ -0,0 +1,137 @@
+package com.hansen.processing.ui.application;
+
+import com.hansen.processing.ui.annotations.ControlReference;
+import com.hansen.processing.ui.controller.Controller;
+import com.hansen.processing.ui.controls.Button;
+import com.hansen.processing.ui.controls.Control;
+import com.hansen.processing.ui.controls.Label;
+import com.hansen.processing.ui.controls.StackPanel;
+
+import processing.core.PImage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders many trees concurrently with a {@link HeadlessRenderer} and checks, that the contexts stay independent:
+ * every image has to be identical to the image rendered on a single thread and every controller has to be wired
+ * to the named controls of its own tree, although all trees use the same names.
+ * <p>
+ * The harness is not part of the library. Compile it against the library and run it with {@code -Djava.awt.headless=true}.
+ * The optional arguments are the number of renders and threads.
+ * @author Florian Hansen
+ *
+ */
+public class HeadlessRendererBenchmark {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 500;
+    private static final int VARIANTS = 10;
+
+    private static final AtomicInteger miswiredControllers = new AtomicInteger();
+
+    /**
+     * Controller of a report, which references the title of its tree by name
+     * @author Florian Hansen
+     *
+     */
+    public static class ReportController extends Controller {
+
+        @ControlReference
+        private Label title;
+
+        private final String expectedTitle;
+
+        public ReportController(String expectedTitle) {
+            this.expectedTitle = expectedTitle;
+        }
+
+        @Override
+        protected void init() {
+            if (title == null || !expectedTitle.equals(title.getText())) {
+                miswiredControllers.incrementAndGet();
+            }
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int renders = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        try (HeadlessRenderer renderer = new HeadlessRenderer(threads)) {
+            // the reference images are rendered one after another
+            int[][] expectedPixels = new int[VARIANTS][];
+
+            for (int variant = 0; variant < VARIANTS; variant++) {
+                final int report = variant;
+                expectedPixels[variant] = renderer.render(() -> createReport(report), WIDTH, HEIGHT).pixels.clone();
+            }
+
+            long start = System.nanoTime();
+            List<Future<PImage>> images = new ArrayList<>();
+
+            for (int i = 0; i < renders; i++) {
+                final int report = i % VARIANTS;
+                images.add(renderer.submit(() -> createReport(report), WIDTH, HEIGHT));
+            }
+
+            int differentImages = 0;
+
+            for (int i = 0; i < renders; i++) {
+                if (!Arrays.equals(images.get(i).get().pixels, expectedPixels[i % VARIANTS])) {
+                    differentImages++;
+                }
+            }
+
+            double duration = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%d renders on %d threads: %.1f ms (%.2f ms per render)%n", renders, threads, duration, duration / renders);
+            System.out.printf("images different from the single thread render: %d%n", differentImages);
+            System.out.printf("controllers wired to another tree: %d%n", miswiredControllers.get());
+
+            if (differentImages > 0 || miswiredControllers.get() > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Creates a report, whose title is referenced by its controller
+     * @param report number of the report
+     * @return the root of the report
+     */
+    private static Control createReport(int report) {
+        String text = "report " + report;
+
+        StackPanel panel = new StackPanel();
+        panel.setBackgroundColor(0xffffffff);
+        panel.setController(new ReportController(text));
+
+        Label title = new Label(text);
+        title.setId("title");
+        title.setStretchHorizontal(true);
+        panel.addChild(title);
+
+        for (int i = 0; i < 20; i++) {
+            Label row = new Label(text + " row " + i);
+            row.setBackgroundColor(i % 2 == 0 ? 0xffeeeeff : 0xffffffff);
+            row.setStretchHorizontal(true);
+            panel.addChild(row);
+        }
+
+        Button button = new Button();
+        button.setText("Open");
+        button.setSize(80, 25);
+        button.setColorTop("#ffff0000");
+        button.setColorBottom("#ff0000ff");
+        button.setBorderRadius(6);
+        panel.addChild(button);
+
+        return panel;
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.hansen.processing.ui.utils;
+
+import processing.awt.PGraphicsJava2D;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * Compares the rounded gradients of {@link ImageUtils}, which are computed by the kernels of {@link RasterUtils},
+ * with the former implementation: a gradient colored by {@link PApplet#color} and {@link PApplet#lerp} per pixel,
+ * which is masked by a rounded rectangle drawn into an offscreen {@link PGraphics}.
+ * <p>
+ * Both paths are warmed up in the same JVM before they are measured. The color channels have to be identical to the
+ * former implementation. The alpha channel of the corners is compared with the exact coverage of the rounded rectangle,
+ * which is sampled 16 x 16 times per pixel, because Java2D approximates the corners by Bezier arcs. The difference to
+ * the former implementation is only reported.
+ * <p>
+ * The harness is not part of the library. Compile it against the library and run it with {@code -Djava.awt.headless=true}.
+ * The optional argument is the number of measured rounds.
+ * @author Florian Hansen
+ *
+ */
+public class RasterUtilsBenchmark implements PConstants {
+
+    private static final int[][] SIZES = { { 120, 30 }, { 400, 300 }, { 1200, 800 } };
+    private static final int COLOR_TOP = 0xffff0000;
+    private static final int COLOR_BOTTOM = 0xff0000ff;
+    private static final int BORDER_RADIUS = 8;
+
+    /**
+     * The kernels derive the coverage from the distance to the corner circle, which differs from the exact coverage
+     * by up to 10 alpha levels. An edge shifted by half a pixel differs by about 128 levels.
+     */
+    private static final int MAX_COVERAGE_DIFFERENCE = 12;
+    private static final int SAMPLES = 16;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        PApplet app = createApp();
+        boolean failed = false;
+
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+
+            // the same number of pixels is processed for every size
+            int iterations = Math.max(10, 2_000_000 / (width * height));
+
+            PImage kernelImage = generateKernels(app, width, height);
+            int[] differences = compare(generateLegacy(app, width, height), kernelImage);
+            int coverageDifference = compareCoverage(kernelImage);
+
+            // warm up
+            measureLegacy(app, width, height, iterations);
+            measureKernels(app, width, height, iterations);
+
+            double legacy = Double.MAX_VALUE;
+            double kernels = Double.MAX_VALUE;
+
+            for (int round = 0; round < rounds; round++) {
+                legacy = Math.min(legacy, measureLegacy(app, width, height, iterations));
+                kernels = Math.min(kernels, measureKernels(app, width, height, iterations));
+            }
+
+            System.out.printf("%4dx%-4d legacy %8.3f ms  kernels %8.3f ms  (%5.1fx)  max difference rgb %d, alpha %d to legacy, %d to exact coverage%n",
+                    width, height, legacy, kernels, legacy / kernels, differences[0], differences[1], coverageDifference);
+
+            if (differences[0] > 0 || coverageDifference > MAX_COVERAGE_DIFFERENCE) {
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            System.out.println("the kernels do not match the former implementation");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the average time of one image in milliseconds
+     */
+    private static double measureLegacy(PApplet app, int width, int height, int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            generateLegacy(app, width, height);
+        }
+
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    /**
+     * @return the average time of one image in milliseconds
+     */
+    private static double measureKernels(PApplet app, int width, int height, int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            generateKernels(app, width, height);
+        }
+
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    private static PImage generateKernels(PApplet app, int width, int height) {
+        return ImageUtils.generateRoundedGradient(app, COLOR_TOP, COLOR_BOTTOM, width, height, BORDER_RADIUS);
+    }
+
+    /**
+     * The former implementation of a rounded gradient
+     */
+    private static PImage generateLegacy(PApplet app, int width, int height) {
+        int tR = (COLOR_TOP >> 16) & 0xFF;
+        int tG = (COLOR_TOP >> 8) & 0xFF;
+        int tB = COLOR_TOP & 0xFF;
+        int bR = (COLOR_BOTTOM >> 16) & 0xFF;
+        int bG = (COLOR_BOTTOM >> 8) & 0xFF;
+        int bB = COLOR_BOTTOM & 0xFF;
+
+        PImage bg = app.createImage(width, height, RGB);
+        bg.loadPixels();
+
+        for (int i = 0; i < bg.pixels.length; i++) {
+            int y = i / bg.width;
+            float n = y / (float) bg.height;
+
+            bg.pixels[i] = app.color(
+                    PApplet.lerp(tR, bR, n),
+                    PApplet.lerp(tG, bG, n),
+                    PApplet.lerp(tB, bB, n),
+                    255);
+        }
+
+        bg.updatePixels();
+
+        PGraphics mask = app.createGraphics(width, height);
+        mask.beginDraw();
+        mask.background(0);
+        mask.smooth();
+        mask.noStroke();
+        mask.fill(255);
+        mask.rect(0, 0, mask.width, mask.height, BORDER_RADIUS);
+        mask.endDraw();
+
+        bg.mask(mask);
+        bg.loadPixels();
+        return bg;
+    }
+
+    /**
+     * @return the largest difference of a color channel and of the alpha channel
+     */
+    private static int[] compare(PImage expected, PImage actual) {
+        int[] differences = new int[2];
+
+        for (int i = 0; i < expected.pixels.length; i++) {
+            int e = expected.pixels[i];
+            int a = actual.pixels[i];
+
+            for (int shift = 0; shift < 24; shift += 8) {
+                differences[0] = Math.max(differences[0], Math.abs(((e >> shift) & 0xFF) - ((a >> shift) & 0xFF)));
+            }
+
+            differences[1] = Math.max(differences[1], Math.abs((e >>> 24) - (a >>> 24)));
+        }
+
+        return differences;
+    }
+
+    /**
+     * @return the largest difference between the alpha channel and the exact coverage of the rounded rectangle
+     */
+    private static int compareCoverage(PImage image) {
+        float radius = Math.min(BORDER_RADIUS, Math.min(image.width, image.height) / 2.0f);
+        int difference = 0;
+
+        for (int y = 0; y < image.height; y++) {
+            for (int x = 0; x < image.width; x++) {
+                int covered = 0;
+
+                for (int sampleY = 0; sampleY < SAMPLES; sampleY++) {
+                    for (int sampleX = 0; sampleX < SAMPLES; sampleX++) {
+                        float px = x + (sampleX + 0.5f) / SAMPLES;
+                        float py = y + (sampleY + 0.5f) / SAMPLES;
+
+                        // distance to the nearest point of the rectangle, which is shrunk by the radius
+                        float dx = px - Math.max(radius, Math.min(image.width - radius, px));
+                        float dy = py - Math.max(radius, Math.min(image.height - radius, py));
+
+                        if (dx * dx + dy * dy <= radius * radius) {
+                            covered++;
+                        }
+                    }
+                }
+
+                int expected = Math.round(covered * 255.0f / (SAMPLES * SAMPLES));
+                difference = Math.max(difference, Math.abs(expected - (image.pixels[y * image.width + x] >>> 24)));
+            }
+        }
+
+        return difference;
+    }
+
+    /**
+     * Creates a sketch, which is never started. Its graphics is needed by {@link PApplet#color}.
+     */
+    private static PApplet createApp() {
+        PApplet app = new PApplet();
+
+        PGraphics graphics = new PGraphicsJava2D();
+        graphics.setParent(app);
+        graphics.setPrimary(false);
+        graphics.setSize(1, 1);
+        graphics.beginDraw();
+        app.g = graphics;
+
+        return app;
+    }
+
+}
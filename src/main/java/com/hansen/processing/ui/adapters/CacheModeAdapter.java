@@ -0,0 +1,33 @@
+package com.hansen.processing.ui.adapters;
+
+import com.hansen.processing.ui.controls.CacheMode;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * This class converts a String to a CacheMode while unmarshalling / marshalling.
+ * @author Florian Hansen
+ *
+ */
+public class CacheModeAdapter extends XmlAdapter<String, CacheMode> {
+
+    @Override
+    public CacheMode unmarshal(String s) throws Exception {
+    	// the layout files name the display list in camel case, which does not match the name of the constant
+    	if (s.equalsIgnoreCase("DisplayList")) {
+    		return CacheMode.DISPLAY_LIST;
+    	}
+
+    	// get the cache mode based on the string
+        return CacheMode.valueOf(s.toUpperCase());
+    }
+
+    @Override
+    public String marshal(CacheMode cacheMode) throws Exception {
+    	if (cacheMode == CacheMode.DISPLAY_LIST) {
+    		return "DisplayList";
+    	}
+
+        return cacheMode.toString().toUpperCase();
+    }
+}
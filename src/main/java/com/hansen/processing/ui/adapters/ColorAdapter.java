@@ -0,0 +1,25 @@
+package com.hansen.processing.ui.adapters;
+
+import com.hansen.processing.ui.utils.ColorUtils;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * This class converts a String to an ARGB color value while unmarshalling / marshalling.
+ * The string is parsed once at load time, so that the color can be used directly while drawing.
+ * @author Florian Hansen
+ *
+ */
+public class ColorAdapter extends XmlAdapter<String, Integer> {
+
+    @Override
+    public Integer unmarshal(String s) throws Exception {
+        return ColorUtils.colorFromString(s);
+    }
+
+    @Override
+    public String marshal(Integer color) throws Exception {
+        return ColorUtils.colorToString(color);
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.hansen.processing.ui.application;
+
+import com.hansen.processing.ui.controller.Controller;
+import com.hansen.processing.ui.controls.Control;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.singleton.Context;
+import com.hansen.processing.ui.xml.XMLLoader;
+
+import processing.awt.PGraphicsJava2D;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders control trees into offscreen JAVA2D images without a window, e.g. to create thumbnails on a server.
+ * <p>
+ * The renderer owns a pool of independent contexts, each with its own sketch, controllers, control ids and dirty region.
+ * While a tree is built and rendered, one of the contexts is bound to the rendering thread by {@link Context#bind(Context)},
+ * so multiple trees can be rendered concurrently on the worker threads of the renderer.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <pre>{@code
+ * try (HeadlessRenderer renderer = new HeadlessRenderer(4)) {
+ *     PImage image = renderer.submit(getClass().getResource("/report.xml"), 800, 600).get();
+ *     ImageUtils.writePng(image, output);
+ * }
+ * }</pre>
+ * Set the system property {@code java.awt.headless} to {@code true} on machines without a display.
+ * @author Florian Hansen
+ *
+ */
+public class HeadlessRenderer implements AutoCloseable {
+
+    private static final AtomicInteger rendererCount = new AtomicInteger();
+
+    private final BlockingQueue<Context> contexts;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a renderer with one context and worker thread per available processor
+     */
+    public HeadlessRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a renderer
+     * @param threads number of contexts and worker threads
+     */
+    public HeadlessRenderer(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("At least one thread is required: " + threads);
+        }
+
+        contexts = new ArrayBlockingQueue<>(threads);
+
+        for (int i = 0; i < threads; i++) {
+            contexts.add(createContext());
+        }
+
+        String threadName = "HeadlessRenderer-" + rendererCount.incrementAndGet() + "-";
+        AtomicInteger threadCount = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadName + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the control tree from the XML file and renders it on a worker thread
+     * @param file
+     * @param width
+     * @param height
+     * @return the rendered image with loaded pixels
+     */
+    public Future<PImage> submit(URL file, int width, int height) {
+        return submit(() -> XMLLoader.load(file), width, height);
+    }
+
+    /**
+     * Builds the control tree and renders it on a worker thread.
+     * @param factory creates the tree. It is called on the worker thread, while a context of this renderer is bound.
+     * @param width
+     * @param height
+     * @return the rendered image with loaded pixels
+     */
+    public Future<PImage> submit(Callable<? extends Control> factory, int width, int height) {
+        return executor.submit(() -> render(factory, width, height));
+    }
+
+    /**
+     * Builds the control tree and renders it on the calling thread. Blocks until a context of this renderer is available.
+     * @param factory creates the tree. It is called, while a context of this renderer is bound.
+     * @param width
+     * @param height
+     * @return the rendered image with loaded pixels
+     * @throws Exception if the tree cannot be created
+     */
+    public PImage render(Callable<? extends Control> factory, int width, int height) throws Exception {
+        Context context = contexts.take();
+        Context previousContext = Context.bind(context);
+
+        try {
+            PApplet app = context.getApp();
+            app.width = width;
+            app.height = height;
+
+            Control root = factory.call();
+
+            try {
+                return draw(root, width, height);
+            } finally {
+                root.dispose();
+            }
+        } finally {
+            context.getControllers().clear();
+            context.getControlIds().clear();
+            Context.bind(previousContext);
+            contexts.put(context);
+        }
+    }
+
+    /**
+     * Stops the worker threads. Renderings, which have already been submitted, are finished.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Initializes and lays out the tree like {@link ProcessingApplication} does and draws it on a new graphics
+     * @param root
+     * @param width
+     * @param height
+     * @return the graphics with loaded pixels
+     */
+    private PGraphics draw(Control root, int width, int height) {
+        Controller.initControllers();
+        root.initControl(root.getController());
+        root.setSize(width, height);
+        root.updateLayout();
+
+        Context context = Context.getInstance();
+        PGraphics graphics = context.getApp().createGraphics(width, height, PConstants.JAVA2D);
+        graphics.beginDraw();
+
+        // the statistics describe the last rendering of the context
+        context.getRenderStatistics().reset();
+
+        Canvas canvas = new Canvas(graphics);
+        canvas.pushVisibleArea(0, 0, width, height);
+        root.drawControl(canvas);
+        canvas.flush();
+
+        graphics.endDraw();
+        graphics.loadPixels();
+
+        return graphics;
+    }
+
+    /**
+     * Creates a context with a sketch, which is never started. Its graphics is only used to measure text.
+     * @return the context
+     */
+    private static Context createContext() {
+        PApplet app = new PApplet();
+
+        // the sketch is not started, so its graphics has to be created by hand
+        PGraphics graphics = new PGraphicsJava2D();
+        graphics.setParent(app);
+        graphics.setPrimary(false);
+        graphics.setSize(1, 1);
+        graphics.beginDraw();
+        app.g = graphics;
+
+        Context context = new Context();
+        context.setApp(app);
+        context.setRenderer(PConstants.JAVA2D);
+
+        return context;
+    }
+
+}
@@ -2,9 +2,19 @@ package com.hansen.processing.ui.application;
 
 import com.hansen.processing.ui.controller.Controller;
 import com.hansen.processing.ui.controls.Control;
+import com.hansen.processing.ui.controls.InputDispatcher;
+import com.hansen.processing.ui.events.InputQueue;
+import com.hansen.processing.ui.listener.RedrawRequestListener;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.rendering.DirtyRegion;
+import com.hansen.processing.ui.rendering.FrameScheduler;
 import com.hansen.processing.ui.singleton.Context;
+import com.hansen.processing.ui.singleton.LayoutStatistics;
+import com.hansen.processing.ui.structures.Bounds;
 
 import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.event.Event;
 import processing.event.KeyEvent;
 import processing.event.MouseEvent;
 
@@ -13,10 +23,20 @@ import processing.event.MouseEvent;
  * @author Florian Hansen
  *
  */
-public abstract class ProcessingApplication extends PApplet implements WindowResizeListener {
+public abstract class ProcessingApplication extends PApplet implements WindowResizeListener, RedrawRequestListener {
+	
+	private static final int BACKGROUND_COLOR = 200;
 	
 	private WindowListener windowListener;
     private Control rootControl;
+    private InputDispatcher inputDispatcher;
+    private volatile InputQueue inputQueue;
+    private boolean retainedRendering;
+    private Canvas canvas;
+    private boolean onDemandRendering;
+    private volatile boolean redrawRequested;
+    private float targetFrameRate = 60;
+    private float unfocusedFrameRate;
     
     protected abstract void init();
     protected abstract Control initControl();
@@ -65,6 +85,13 @@ public abstract class ProcessingApplication extends PApplet implements WindowRes
         	// initialize the root control and make it filling the window
         	rootControl.initControl(rootControl.getController());
         	rootControl.setSize(width, height);  
+        	rootControl.updateLayout();
+        	
+        	// pointer events are delivered to the control under the pointer
+        	inputDispatcher = new InputDispatcher(rootControl);
+        	
+        	// input events are queued until the next frame from now on
+        	inputQueue = Context.getInstance().getInputQueue();
         }
         
         // execute the initialization callback function
@@ -73,71 +100,301 @@ public abstract class ProcessingApplication extends PApplet implements WindowRes
 
     @Override
     public void draw() {
-        background(200);
+    	// requests arriving while this frame is drawn keep the loop running
+    	redrawRequested = false;
+    	
+    	// the input arriving since the last frame is handled once, before timers, animations and controllers change the controls
+    	if (inputQueue != null) {
+    		inputQueue.process(this::handleInput);
+    	}
+    	
+    	// timers and animations change the controls before they are drawn
+    	FrameScheduler scheduler = Context.getInstance().getScheduler();
+    	scheduler.advance();
+    	
+    	if (!retainedRendering) {
+    		background(BACKGROUND_COLOR);
+    	}
 
         if (rootControl != null) {
         	for (Controller controller : Controller.getControllers()) {
         		controller.update();
         	}
         	
-            rootControl.drawControl(getGraphics());
+        	// changes of sizes and children are laid out once, before anything is drawn
+        	rootControl.updateLayout();
+        	
+        	// processing resets the matrix at the beginning of every frame
+        	Context.getInstance().getRenderStatistics().reset();
+        	getCanvas().resetMatrix();
+        	
+        	if (retainedRendering) {
+        		drawDirtyRegion();
+        	} else {
+        		Canvas canvas = getCanvas();
+        		canvas.resetVisibleArea();
+        		canvas.pushVisibleArea(0, 0, width, height);
+        		rootControl.drawControl(canvas);
+        		canvas.flush();
+        	}
+        }
+        
+        if (onDemandRendering) {
+        	synchronized (this) {
+        		// pending timers have to be checked in the following frames
+        		if (!redrawRequested && !scheduler.hasTimers()) {
+        			noLoop();
+        		}
+        	}
         }
+        
+        // the layout callbacks of this frame, including those between the frames, become readable
+        LayoutStatistics.getInstance().endFrame();
+    }
+    
+    /**
+     * @return the dispatcher, which delivers the pointer events to the controls, or null, if there is no root control
+     */
+    public InputDispatcher getInputDispatcher() {
+    	return inputDispatcher;
+    }
+    
+    /**
+     * @return true, if frames are only drawn on request
+     */
+    public boolean isOnDemandRendering() {
+    	return onDemandRendering;
+    }
+    
+    /**
+     * Enables or disables on demand rendering. If enabled, the application stops drawing frames, as soon as nothing
+     * has changed. A new frame is drawn, when input arrives, a control is invalidated, a property of a controller changes
+     * or a controller calls {@link Controller#requestUpdate()}. Combine it with retained rendering to repaint only what has changed.
+     * @param onDemandRendering
+     */
+    public void setOnDemandRendering(boolean onDemandRendering) {
+    	this.onDemandRendering = onDemandRendering;
+    	Context.getInstance().setRedrawRequestListener(onDemandRendering ? this : null);
+    	
+    	if (onDemandRendering) {
+    		onRedrawRequest();
+    	} else {
+    		loop();
+    	}
+    }
+    
+    /**
+     * @return the frame rate, while the window is not focused or 0, if it is not throttled
+     */
+    public float getUnfocusedFrameRate() {
+    	return unfocusedFrameRate;
+    }
+    
+    /**
+     * Sets the frame rate, while the window is not focused. A value of 0 disables throttling.
+     * @param unfocusedFrameRate
+     */
+    public void setUnfocusedFrameRate(float unfocusedFrameRate) {
+    	this.unfocusedFrameRate = unfocusedFrameRate;
+    	applyFrameRate();
+    }
+    
+    @Override
+    public void frameRate(float fps) {
+    	targetFrameRate = fps;
+    	applyFrameRate();
+    }
+    
+    @Override
+    public void focusGained() {
+    	super.focusGained();
+    	applyFrameRate();
+    	onRedrawRequest();
+    }
+    
+    @Override
+    public void focusLost() {
+    	super.focusLost();
+    	applyFrameRate();
+    }
+    
+    @Override
+    public void setSize(int width, int height) {
+    	super.setSize(width, height);
+    	
+    	// the size is checked before the next frame
+    	onRedrawRequest();
+    }
+    
+    @Override
+    public void onRedrawRequest() {
+    	if (!onDemandRendering || (redrawRequested && isLooping())) {
+    		return;
+    	}
+    	
+    	synchronized (this) {
+    		redrawRequested = true;
+    		
+    		if (!isLooping()) {
+    			loop();
+    		}
+    	}
+    }
+    
+    /**
+     * Applies the target frame rate or the throttled one, if the window is not focused
+     */
+    private void applyFrameRate() {
+    	super.frameRate(!focused && unfocusedFrameRate > 0 ? unfocusedFrameRate : targetFrameRate);
+    }
+    
+    /**
+     * @return true, if only the invalidated areas of the window are repainted
+     */
+    public boolean isRetainedRendering() {
+    	return retainedRendering;
+    }
+    
+    /**
+     * Enables or disables retained rendering. If enabled, the window is not cleared every frame. Instead only the areas of
+     * controls, which have been invalidated by {@link Control#invalidateVisual()}, are repainted.
+     * @param retainedRendering
+     */
+    public void setRetainedRendering(boolean retainedRendering) {
+    	this.retainedRendering = retainedRendering;
+    	
+    	DirtyRegion dirtyRegion = Context.getInstance().getDirtyRegion();
+    	dirtyRegion.setEnabled(retainedRendering);
+    	dirtyRegion.invalidate(0, 0, width, height);
+    }
+    
+    /**
+     * @return the canvas, which draws on the graphics of this application
+     */
+    protected Canvas getCanvas() {
+    	if (canvas == null || canvas.getGraphics() != g) {
+    		canvas = new Canvas(g);
+    	}
+    	
+    	return canvas;
+    }
+    
+    /**
+     * Repaints all controls intersecting the areas, which have been invalidated since the last frame
+     */
+    private void drawDirtyRegion() {
+    	DirtyRegion dirtyRegion = Context.getInstance().getDirtyRegion();
+    	PGraphics graphics = getGraphics();
+    	Canvas canvas = getCanvas();
+    	canvas.resetVisibleArea();
+    	canvas.pushVisibleArea(0, 0, width, height);
+    	
+    	for (Bounds bounds : dirtyRegion.collect(rootControl)) {
+    		// skip every control outside of the repainted area
+    		canvas.pushVisibleArea(bounds);
+    		graphics.clip(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    		
+    		// clear only the repainted area instead of the whole window
+    		graphics.noStroke();
+    		graphics.fill(BACKGROUND_COLOR);
+    		graphics.rect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    		
+    		rootControl.drawControl(canvas);
+    		canvas.flush();
+    		graphics.noClip();
+    		canvas.popVisibleArea();
+    	}
     }
 
     @Override
     public void mouseMoved(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMouseMoved(event);    		
-    	}
+    	postInput(event);
     }
     
     @Override
     public void mouseClicked(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMouseClicked(event);
-        }
+    	postInput(event);
     }
 
     @Override
     public void mousePressed(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMousePressed(event);
-        }
+    	postInput(event);
     }
     
     @Override
     public void mouseReleased(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMouseReleased(event);
-        }
+    	postInput(event);
     }
     
     @Override
     public void mouseWheel(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMouseWheel(event);
-        }
+    	postInput(event);
     }
     
     @Override
     public void mouseDragged(MouseEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleMouseDrag(event);
-    	}
+    	postInput(event);
     }
 
     @Override
     public void keyPressed(KeyEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleKeyPressed(event);
-        }
+    	postInput(event);
     }
 
     @Override
     public void keyReleased(KeyEvent event) {
-    	if (rootControl != null) {
-    		rootControl.handleKeyReleased(event);
-        }
+    	postInput(event);
+    }
+    
+    /**
+     * Queues an input event, so that it is handled at the beginning of the next frame
+     * @param event
+     */
+    private void postInput(Event event) {
+    	if (inputQueue != null) {
+    		inputQueue.post(event);
+    		onRedrawRequest();
+    	}
+    }
+    
+    /**
+     * Delivers a queued input event to the controls
+     * @param event
+     */
+    private void handleInput(Event event) {
+    	if (event instanceof MouseEvent) {
+    		MouseEvent mouseEvent = (MouseEvent) event;
+    		
+    		switch (event.getAction()) {
+    			case MouseEvent.MOVE:
+    				inputDispatcher.mouseMoved(mouseEvent);
+    				break;
+    			case MouseEvent.CLICK:
+    				inputDispatcher.mouseClicked(mouseEvent);
+    				break;
+    			case MouseEvent.PRESS:
+    				inputDispatcher.mousePressed(mouseEvent);
+    				break;
+    			case MouseEvent.RELEASE:
+    				inputDispatcher.mouseReleased(mouseEvent);
+    				break;
+    			case MouseEvent.WHEEL:
+    				rootControl.handleMouseWheel(mouseEvent);
+    				break;
+    			case MouseEvent.DRAG:
+    				inputDispatcher.mouseDragged(mouseEvent);
+    				break;
+    			default:
+    				break;
+    		}
+    	} else if (event instanceof KeyEvent) {
+    		// key events are routed along the focused element and its parents
+    		if (event.getAction() == KeyEvent.PRESS) {
+    			inputDispatcher.keyPressed((KeyEvent) event);
+    		} else if (event.getAction() == KeyEvent.RELEASE) {
+    			inputDispatcher.keyReleased((KeyEvent) event);
+    		}
+    	}
     }
 
     @Override
@@ -146,6 +403,8 @@ public abstract class ProcessingApplication extends PApplet implements WindowRes
 	        rootControl.setWidth(width);
 	        rootControl.setHeight(height);
         }
+    	
+    	Context.getInstance().getDirtyRegion().invalidate(0, 0, width, height);
     }
 
 }
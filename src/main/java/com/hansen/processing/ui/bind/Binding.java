@@ -2,6 +2,7 @@ package com.hansen.processing.ui.bind;
 
 import com.hansen.processing.ui.events.NotifyPropertyChanged;
 import com.hansen.processing.ui.events.PropertyChangedEventListener;
+import com.hansen.processing.ui.utils.ColorUtils;
 import com.hansen.processing.ui.utils.PropertyUtils;
 
 import java.lang.reflect.InvocationTargetException;
@@ -93,7 +94,7 @@ public class Binding {
             	try {
             		// otherwise just use the property value
             		Object value = senderGetter.invoke(sender);
-            		receiverSetter.invoke(receiver, value);            		
+            		resolveReceiverSetter(value).invoke(receiver, value);
             	} catch (IllegalArgumentException e) {
             		System.out.println("The property types don't match. Please use a ValueConverter.");
             		System.out.println(
@@ -116,11 +117,49 @@ public class Binding {
             } else {
                 // otherwise just use the property value
                 Object value = receiverGetter.invoke(receiver);
-                senderSetter.invoke(sender, value);
+                senderSetter.invoke(sender, convertBackColor(value));
             }
         } catch (IllegalAccessException | InvocationTargetException ignore) { }
     }
 
+    /**
+     * Colors are stored as ARGB integers by the controls, but their setters also accept hex strings,
+     * which the bound properties may hold
+     * @param value the value of the sender
+     * @return the overload of the receiver setter, which accepts the value
+     */
+    private Method resolveReceiverSetter(Object value) {
+        if (value instanceof String && receiverSetter.getParameterTypes()[0] == int.class) {
+            Method stringSetter = getReceiverStringSetter();
+
+            if (stringSetter != null) {
+                return stringSetter;
+            }
+        }
+
+        return receiverSetter;
+    }
+
+    /**
+     * Converts a color of the receiver back into a hex string, if the sender holds the color as a string
+     * @param value the value of the receiver
+     * @return the value, which can be passed to the sender setter
+     */
+    private Object convertBackColor(Object value) {
+        if (value instanceof Integer && senderSetter.getParameterTypes()[0] == String.class && getReceiverStringSetter() != null) {
+            return ColorUtils.colorToString((Integer) value);
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the setter of the receiver property, which accepts a string, or null, if there is none
+     */
+    private Method getReceiverStringSetter() {
+        return PropertyUtils.getMethod(receiver.getClass(), receiverSetter.getName(), String.class);
+    }
+
     public String getSenderPropertyName() {
         return senderPropertyName;
     }
@@ -6,9 +6,9 @@ import com.hansen.processing.ui.events.NotifyPropertyChanged;
 import com.hansen.processing.ui.events.EventListener;
 import com.hansen.processing.ui.events.PropertyChangedEvent;
 import com.hansen.processing.ui.events.PropertyChangedEventArgs;
+import com.hansen.processing.ui.singleton.Context;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,16 +19,13 @@ import java.util.List;
 public abstract class Controller implements NotifyPropertyChanged {
 	
 	public Object target;
-	
-    // this list contains all instantiated controllers to be able to initialize them
-    private static List<Controller> controllers = new ArrayList<>();
 
     /**
      * Static method to get the list of instantiated controllers
-     * @return List of all instantiated controllers
+     * @return List of all controllers instantiated in the current context
      */
     public static List<Controller> getControllers() {
-        return controllers;
+        return Context.getInstance().getControllers();
     }
 
     /**
@@ -36,7 +33,7 @@ public abstract class Controller implements NotifyPropertyChanged {
      */
     public static void initControllers() {
         // iterate over every registered controller and initialize it
-        for (Controller controller : controllers) {
+        for (Controller controller : getControllers()) {
             // initialize fields of the controller
             for (Field field : controller.getClass().getDeclaredFields()) {
 
@@ -87,6 +84,9 @@ public abstract class Controller implements NotifyPropertyChanged {
     @Override
     public void notifyPropertyChanged(String propertyName) {
         propertyChangedEvent.invoke(this, new PropertyChangedEventArgs(propertyName));
+        
+        // bound controls are synchronized while drawing
+        Context.getInstance().requestRedraw();
     }
 
     @Override
@@ -94,16 +94,29 @@ public abstract class Controller implements NotifyPropertyChanged {
         propertyChangedEvent.addListener(listener);
     }
 
+    @Override
+    public void removePropertyChangedListener(EventListener<PropertyChangedEventArgs> listener) {
+        propertyChangedEvent.removeListener(listener);
+    }
+
     /**
-     * Update callback
+     * Update callback. It is called once per frame. If the application only draws on demand,
+     * call {@link #requestUpdate()} to be called again in the next frame.
      */
     public void update() { }
+    
+    /**
+     * Requests another frame, so that {@link #update()} is called again, e.g. while an animation is running
+     */
+    public void requestUpdate() {
+    	Context.getInstance().requestRedraw();
+    }
 
     /**
      * Constructor
      */
     public Controller() {
-        controllers.add(this);
+        getControllers().add(this);
     }
 
     /**
@@ -0,0 +1,27 @@
+package com.hansen.processing.ui.controls;
+
+/**
+ * Defines how the rendering of a control and its children is cached between frames.
+ * @author Florian Hansen
+ *
+ */
+public enum CacheMode {
+
+	/**
+	 * The control and its children are drawn every time they are painted.
+	 */
+	NONE,
+	
+	/**
+	 * The control and its children are rendered once into an offscreen image, which is drawn until something inside
+	 * the subtree is invalidated. Children outside the bounds of the control are clipped.
+	 */
+	BITMAP,
+	
+	/**
+	 * The drawing calls of the control and its children are recorded once and replayed until something inside
+	 * the subtree is invalidated. Replaying skips the traversal of the children and their synchronization.
+	 */
+	DISPLAY_LIST
+	
+}
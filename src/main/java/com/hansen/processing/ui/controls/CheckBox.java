@@ -4,10 +4,12 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import com.hansen.processing.ui.adapters.ColorAdapter;
+import com.hansen.processing.ui.rendering.Canvas;
 import com.hansen.processing.ui.utils.ColorUtils;
 
-import processing.core.PGraphics;
 import processing.event.MouseEvent;
 
 /**
@@ -20,7 +22,7 @@ import processing.event.MouseEvent;
 public class CheckBox extends Control {
 
 	private boolean checked;
-	private String checkColor;
+	private int checkColor = ColorUtils.TRANSPARENT;
 	
 	public CheckBox() {
 		super();
@@ -31,13 +33,13 @@ public class CheckBox extends Control {
 	}
 	
 	@Override
-	protected void draw(PGraphics g) {
+	protected void draw(Canvas canvas) {
 		if (isChecked()) {
-			g.strokeWeight(2);
-			g.stroke(ColorUtils.colorFromString(getCheckColor()));
+			canvas.strokeWeight(2);
+			canvas.stroke(checkColor);
 			
-			g.line(3, getOffsetHeight() - 6, 6, getOffsetHeight() - 3);
-			g.line(6, getOffsetHeight() - 3, getOffsetWidth() - 3, 3);
+			canvas.line(3, getOffsetHeight() - 6, 6, getOffsetHeight() - 3);
+			canvas.line(6, getOffsetHeight() - 3, getOffsetWidth() - 3, 3);
 		}
 	}
 	
@@ -62,6 +64,7 @@ public class CheckBox extends Control {
 	 */
 	public void setChecked(boolean checked) {
 		this.checked = checked;
+		invalidateVisual();
 	}
 	
 	/**
@@ -69,7 +72,8 @@ public class CheckBox extends Control {
 	 * @return
 	 */
 	@XmlAttribute(name = "CheckColor")
-	public String getCheckColor() {
+	@XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+	public int getCheckColor() {
 		return checkColor;
 	}
 	
@@ -78,7 +82,16 @@ public class CheckBox extends Control {
 	 * @param checkColor
 	 */
 	public void setCheckColor(String checkColor) {
+		setCheckColor(ColorUtils.colorFromString(checkColor));
+	}
+	
+	/**
+	 * Sets the color of the check sign as ARGB value
+	 * @param checkColor
+	 */
+	public void setCheckColor(int checkColor) {
 		this.checkColor = checkColor;
+		invalidateVisual();
 	}
 	
 }
@@ -2,13 +2,19 @@ package com.hansen.processing.ui.controls;
 
 import com.hansen.processing.ui.adapters.*;
 import com.hansen.processing.ui.bind.Binding;
+import com.hansen.processing.ui.events.DragEventArgs;
 import com.hansen.processing.ui.events.NotifyPropertyChanged;
 import com.hansen.processing.ui.events.PropertyChangedObserver;
 import com.hansen.processing.ui.listener.ClickListener;
 import com.hansen.processing.ui.listener.ResizeListener;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.rendering.DisplayList;
+import com.hansen.processing.ui.structures.Bounds;
 import com.hansen.processing.ui.utils.ColorUtils;
 import com.hansen.processing.ui.controller.Controller;
 import com.hansen.processing.ui.singleton.Context;
+import com.hansen.processing.ui.singleton.LayoutStatistics;
+import com.hansen.processing.ui.singleton.LayoutStatistics.Counter;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PGraphics;
@@ -32,9 +38,29 @@ import java.util.*;
 @XmlAccessorType(XmlAccessType.NONE)
 public abstract class Control extends PropertyChangedObserver implements ResizeListener, PConstants {
 
-    private static HashMap<String, Control> controlIds = new HashMap<>();
+    // more passes point to controls, which keep invalidating each other
+    private static final int MAX_LAYOUT_PASSES = 8;
+
+    private static final LayoutStatistics layoutStatistics = LayoutStatistics.getInstance();
+
+    // drawing on the graphics directly prevents replaying display lists, so only elements, which still override
+    // the deprecated draw methods, do it. The lookup is done once per class.
+    private static final ClassValue<Boolean> drawsOnGraphics = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return overridesGraphicsMethod(type, "draw");
+        }
+    };
+    private static final ClassValue<Boolean> drawsChildrenOnGraphics = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return overridesGraphicsMethod(type, "drawChildren");
+        }
+    };
     private boolean resizeListenersLocked;
+    private int resizeDepth;
     private Map<QName, String> extensions;
+    private final Context ownerContext;
     
     protected PApplet app;
     protected String id;
@@ -50,7 +76,7 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     protected float height;
     protected Thickness margin;
     protected Thickness padding;
-    protected String backgroundColor;
+    protected int backgroundColor = ColorUtils.TRANSPARENT;
     protected Controller controller;
     private boolean isFitting;
     protected List<ResizeListener> resizeListeners = new ArrayList<>();
@@ -59,13 +85,36 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     protected boolean isClicked;
     protected PVector dragStart = new PVector();
     protected boolean isMouseOverTriggered;
+    protected boolean isFocused;
+    private FocusManager focusManager;
+    private InputDispatcher inputDispatcher;
+    private Bounds extents = new Bounds();
+    private Bounds paintedBounds = new Bounds();
+    private boolean extentsValid;
+    private boolean visualValid;
+    private boolean measureValid;
+    private boolean arrangeValid;
+    private boolean layoutValid;
+    private List<Control> invalidChildren = new ArrayList<>();
+
+    // descendants, which depend on the visible part of the content of this element, e.g. to create only the visible rows
+    private List<Control> viewportDependents;
+    private int cachedGeneration = -1;
+    private float absoluteX;
+    private float absoluteY;
+    private boolean parentVisible;
+    boolean hitBoundsValid;
+    HitTestIndex.Node hitTestNode;
+    private CacheMode cacheMode = CacheMode.NONE;
+    private PGraphics cacheLayer;
+    private DisplayList displayList;
 
     public Control(PApplet app) {
         this.app = app;
 
-        String randomId = UUID.randomUUID().toString();
-        setId(randomId);
-        controlIds.put(randomId, this);
+        // the id lookup belongs to the context, which creates the element, so concurrent trees do not share ids
+        ownerContext = Context.getInstance();
+        setId(UUID.randomUUID().toString());
 
         children = new ArrayList<>();
         position = new PVector();
@@ -102,7 +151,7 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
 	public static <T extends Control> List<T> getControls(Class<T> controlClass) {
     	List<T> list = new ArrayList<>();
     	
-    	for (Control control : controlIds.values()) {
+    	for (Control control : Context.getInstance().getControlIds().values()) {
     		if (control.getClass().isAssignableFrom(controlClass)) {
     			list.add((T) control);
     		}
@@ -112,14 +161,14 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     }
 
     /**
-     * Returns a control by its name / id.
+     * Returns a control by its name / id. Only the controls of the current context are found.
      * @param <T>
      * @param id
      * @return
      */
     @SuppressWarnings("unchecked")
 	public static <T extends Control> T getControlById(String id) {
-        return (T) controlIds.get(id);
+        return (T) Context.getInstance().getControlIds().get(id);
     }
 
     /**
@@ -167,7 +216,28 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
         }
 
         init();
+        bind(context);
+    }
 
+    /**
+     * Replaces the bindings of the control and all child elements by bindings to another context.
+     * In contrast to {@link #initControl(NotifyPropertyChanged)} the elements are not initialized again.
+     * @param context
+     */
+    public void rebind(NotifyPropertyChanged context) {
+        for (Control child : children) {
+            child.rebind(context);
+        }
+
+        clearBindings();
+        bind(context);
+    }
+
+    /**
+     * Creates the binding defined by the {@code Bind} extension
+     * @param context
+     */
+    private void bind(NotifyPropertyChanged context) {
         String bindString = getExtensionValue("Bind");
 
         if (context != null && bindString != null) {
@@ -184,6 +254,12 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
 
     @Override
     public void onControlResize(float width, float height) {
+        layoutStatistics.count(this, Counter.CONTROL_RESIZE);
+
+        if (resizeDepth > 0) {
+            layoutStatistics.countResizeLoop(this);
+        }
+
         float effectiveWidth = width - margin.getLeft() - margin.getRight();
         float effectiveHeight = height - margin.getTop() - margin.getBottom();
 
@@ -193,7 +269,15 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
             setSize(effectiveWidth, effectiveHeight);
         }
 
-        setMargin(getMargin());
+        // the margin is only replaced, if the alignment moves the element, so that the layout settles
+        if (alignMargin(margin)) {
+            invalidatePosition();
+            invalidateVisual();
+
+            if (parent != null) {
+                parent.onChildSizeChanged(this);
+            }
+        }
     }
 
     /**
@@ -297,6 +381,108 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
         return parent;
     }
 
+    /**
+     * @return The topmost element of the tree, which contains this element
+     */
+    public Control getRoot() {
+        Control root = this;
+
+        while (root.parent != null) {
+            root = root.parent;
+        }
+
+        return root;
+    }
+
+    /**
+     * @return the focus manager of the tree, which contains this element, or null, if the tree has none
+     */
+    public FocusManager getFocusManager() {
+        return getRoot().focusManager;
+    }
+
+    /**
+     * Sets the focus manager of the tree, whose root is this element
+     * @param focusManager
+     */
+    void setFocusManager(FocusManager focusManager) {
+        this.focusManager = focusManager;
+    }
+
+    /**
+     * @return the dispatcher of the input events of the tree, which contains this element, or null, if the tree has none
+     */
+    public InputDispatcher getInputDispatcher() {
+        return getRoot().inputDispatcher;
+    }
+
+    /**
+     * Sets the dispatcher of the input events of the tree, whose root is this element
+     * @param inputDispatcher
+     */
+    void setInputDispatcher(InputDispatcher inputDispatcher) {
+        this.inputDispatcher = inputDispatcher;
+    }
+
+    /**
+     * @return the dispatcher of the tree, which is created for the root, if the tree has none yet
+     */
+    private InputDispatcher requireInputDispatcher() {
+        Control root = getRoot();
+
+        if (root.inputDispatcher == null) {
+            new InputDispatcher(root);
+        }
+
+        return root.inputDispatcher;
+    }
+
+    /**
+     * Moves the keyboard focus to this element
+     * @return true, if the element has the focus now
+     */
+    public boolean focus() {
+        FocusManager manager = getFocusManager();
+        return manager != null && manager.setFocusedControl(this);
+    }
+
+    /**
+     * @return true, if this element receives the key events
+     */
+    public boolean isFocused() {
+        return isFocused;
+    }
+
+    /**
+     * @return true, if this element can receive the keyboard focus, e.g. by clicking it or by pressing tab
+     */
+    protected boolean isFocusable() {
+        return false;
+    }
+
+    /**
+     * @return The absolute area covered by this element and its children, when it was painted the last time
+     */
+    public Bounds getPaintedBounds() {
+        return paintedBounds;
+    }
+
+    /**
+     * @return The absolute area covered by this element and its children at its current position or null, if it is not visible
+     */
+    public Bounds getVisualBounds() {
+        if (!isVisible() || !isParentVisible()) {
+            return null;
+        }
+
+        float absoluteX = getAbsoluteX();
+        float absoluteY = getAbsoluteY();
+        Bounds visualBounds = new Bounds(absoluteX, absoluteY, getOffsetWidth(), getOffsetHeight());
+        visualBounds.union(absoluteX + extents.getX(), absoluteY + extents.getY(), extents.getWidth(), extents.getHeight());
+
+        return visualBounds;
+    }
+
     /**
      * @return The position
      */
@@ -350,10 +536,20 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @return The background color
      */
     @XmlAttribute(name = "Background")
-    public String getBackgroundColor() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getBackgroundColor() {
         return backgroundColor;
     }
 
+    /**
+     * @return How the rendering of this element and its children is cached between frames
+     */
+    @XmlAttribute(name = "CacheMode")
+    @XmlJavaTypeAdapter(CacheModeAdapter.class)
+    public CacheMode getCacheMode() {
+        return cacheMode;
+    }
+
     /**
      * @return True, if the width and height fits the parent size
      */
@@ -386,8 +582,16 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param id is the identifier of the element
      */
     public void setId(String id) {
-        controlIds.remove(this.id);
-        controlIds.put(id, this);
+        Map<String, Control> controlIds = ownerContext.getControlIds();
+
+        if (this.id != null) {
+            controlIds.remove(this.id, this);
+        }
+
+        if (id != null) {
+            controlIds.put(id, this);
+        }
+
         this.id = id;
     }
 
@@ -399,7 +603,7 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
         this.stretchHorizontal = stretchHorizontal;
 
         if (parent != null) {
-            setWidth(parent.getWidth());
+            parent.onChildPlacementChanged(this);
         }
     }
 
@@ -408,7 +612,11 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param visible
      */
     public void setVisible(Boolean visible) {
-        this.visible = visible;
+        if (!visible.equals(this.visible)) {
+            this.visible = visible;
+            invalidatePosition();
+            invalidateVisual();
+        }
     }
 
     /**
@@ -432,7 +640,13 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param position
      */
     public void setPosition(PVector position) {
+        boolean changed = this.position == null || this.position.x != position.x || this.position.y != position.y;
         this.position = position;
+
+        if (changed) {
+            invalidatePosition();
+            invalidateVisual();
+        }
     }
 
     /**
@@ -440,7 +654,26 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param offsetPosition
      */
     public void setOffsetPosition(PVector offsetPosition) {
+        boolean changed = this.offsetPosition == null || this.offsetPosition.x != offsetPosition.x || this.offsetPosition.y != offsetPosition.y;
         this.offsetPosition = offsetPosition;
+
+        if (changed) {
+            invalidatePosition();
+            invalidateVisual();
+        }
+    }
+
+    /**
+     * Sets the offset position without allocating a new vector
+     * @param x
+     * @param y
+     */
+    public void setOffsetPosition(float x, float y) {
+        if (offsetPosition.x != x || offsetPosition.y != y) {
+            offsetPosition.set(x, y);
+            invalidatePosition();
+            invalidateVisual();
+        }
     }
 
     /**
@@ -449,6 +682,7 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      */
     public void setParent(Control parent) {
     	this.parent = parent;
+    	invalidatePosition();
     	
 		if (isStretchHorizontal()) {
 			setWidth(parent.getWidth() - margin.getLeft() - margin.getRight());
@@ -478,7 +712,11 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param x
      */
     public void setX(float x) {
-        position.x = x;
+        if (position.x != x) {
+            position.x = x;
+            invalidatePosition();
+            invalidateVisual();
+        }
     }
 
     /**
@@ -486,7 +724,11 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param y
      */
     public void setY(float y) {
-        position.y = y;
+        if (position.y != y) {
+            position.y = y;
+            invalidatePosition();
+            invalidateVisual();
+        }
     }
 
     /**
@@ -494,10 +736,13 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param width
      */
     public void setWidth(float width) {
-        this.width = width;
+        layoutStatistics.count(this, Counter.SET_WIDTH);
 
-        if (!isResizeListenersLocked()) {
-            invokeResizeListeners();
+        if (this.width != width) {
+            this.width = width;
+            invalidateHitBounds();
+            invalidateVisual();
+            invalidateSize();
         }
     }
 
@@ -506,10 +751,13 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param height
      */
     public void setHeight(float height) {
-        this.height = height;
+        layoutStatistics.count(this, Counter.SET_HEIGHT);
 
-        if (!isResizeListenersLocked()) {
-            invokeResizeListeners();
+        if (this.height != height) {
+            this.height = height;
+            invalidateHitBounds();
+            invalidateVisual();
+            invalidateSize();
         }
     }
 
@@ -528,6 +776,29 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param margin
      */
     public void setMargin(Thickness margin) {
+        alignMargin(margin);
+
+        this.margin = margin;
+        invalidatePosition();
+        invalidateVisual();
+
+        // the bounding size has changed
+        if (parent != null) {
+            parent.onChildSizeChanged(this);
+        }
+    }
+
+    /**
+     * Overrides the margin based on the alignment of this element inside its parent
+     * @param margin
+     * @return true, if the margin has been changed
+     */
+    private boolean alignMargin(Thickness margin) {
+        float left = margin.getLeft();
+        float top = margin.getTop();
+        float right = margin.getRight();
+        float bottom = margin.getBottom();
+
     	// override margins top and bottom value based on the vertical alignment
         switch (verticalAlignment) {
             case TOP:
@@ -567,7 +838,7 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
             	break;
         }
 
-        this.margin = margin;
+        return left != margin.getLeft() || top != margin.getTop() || right != margin.getRight() || bottom != margin.getBottom();
     }
 
     /**
@@ -576,6 +847,9 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      */
     public void setPadding(Thickness padding) {
         this.padding = padding;
+        invalidateAbsolutePositions();
+        invalidateVisual();
+        invalidateSize();
     }
 
     /**
@@ -583,7 +857,35 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @param backgroundColor
      */
     public void setBackgroundColor(String backgroundColor) {
+        setBackgroundColor(ColorUtils.colorFromString(backgroundColor));
+    }
+
+    /**
+     * Sets the background color as ARGB value
+     * @param backgroundColor
+     */
+    public void setBackgroundColor(int backgroundColor) {
         this.backgroundColor = backgroundColor;
+        invalidateVisual();
+    }
+
+    /**
+     * Sets how the rendering of this element and its children is cached between frames
+     * @param cacheMode
+     */
+    public void setCacheMode(CacheMode cacheMode) {
+        this.cacheMode = cacheMode;
+
+        // release the cache of the previous mode
+        if (cacheMode != CacheMode.BITMAP) {
+            cacheLayer = null;
+        }
+
+        if (cacheMode != CacheMode.DISPLAY_LIST) {
+            displayList = null;
+        }
+
+        invalidateVisual();
     }
 
     /**
@@ -592,6 +894,10 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      */
     public void setFit(Boolean fitting) {
         isFitting = fitting;
+
+        if (parent != null) {
+            parent.onChildPlacementChanged(this);
+        }
     }
 
     /**
@@ -600,8 +906,14 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      */
     public void addChild(Control child) {
         children.add(child);
-        resizeListeners.add(child);
         child.setParent(this);
+        child.invalidateVisual();
+        invalidateMeasure();
+
+        // a new element has never been laid out
+        if (!child.layoutValid) {
+            invalidChildren.add(child);
+        }
     }
 
     /**
@@ -621,40 +933,412 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     }
     
     /**
-     * Draw the element and all of its children, if visible
+     * Marks the element as changed, so that it is repainted in the next frame
+     */
+    public void invalidateVisual() {
+        extentsValid = false;
+        visualValid = false;
+
+        // the areas and cached layers of the parents include this element, so they are not valid anymore
+        for (Control currentParent = parent; currentParent != null && (currentParent.extentsValid || currentParent.visualValid); currentParent = currentParent.parent) {
+            currentParent.extentsValid = false;
+            currentParent.visualValid = false;
+        }
+
+        // the window of the context, which has created the element, has to be repainted, regardless of the calling thread
+        ownerContext.getDirtyRegion().invalidate(this);
+        ownerContext.requestRedraw();
+    }
+    
+    /**
+     * Marks the size of the element as outdated, e.g. because its text has changed. The element is measured
+     * and arranged again in the next layout pass, which is run once before the next frame is drawn.
+     */
+    public void invalidateMeasure() {
+        measureValid = false;
+        arrangeValid = false;
+        invalidateLayoutPath();
+    }
+
+    /**
+     * Marks the placement of the children as outdated. The children are placed inside of this element again
+     * in the next layout pass, which is run once before the next frame is drawn.
+     */
+    public void invalidateArrange() {
+        arrangeValid = false;
+        invalidateLayoutPath();
+    }
+
+    /**
+     * Marks the positions of the children as outdated after the content offset has changed, e.g. by scrolling.
+     * The descendants, which depend on the visible part of the content, are arranged again in the next layout pass.
+     */
+    protected void invalidateContentOffset() {
+        // the bounds of the children, which can be hit, do not contain the content offset, so only this element is updated
+        invalidatePosition();
+        invalidateViewportDependents();
+    }
+
+    /**
+     * Arranges a descendant again, whenever this element is arranged or its content offset changes,
+     * because the descendant depends on the part of the content, which is visible inside of this element
+     * @param dependent
+     */
+    void addViewportDependent(Control dependent) {
+        if (viewportDependents == null) {
+            viewportDependents = new ArrayList<>();
+        }
+
+        if (!viewportDependents.contains(dependent)) {
+            viewportDependents.add(dependent);
+        }
+    }
+
+    /**
+     * Invalidates the arrangement of the dependent descendants and forgets the ones, which have been removed from this element
+     */
+    private void invalidateViewportDependents() {
+        if (viewportDependents == null) {
+            return;
+        }
+
+        Iterator<Control> iterator = viewportDependents.iterator();
+
+        while (iterator.hasNext()) {
+            Control dependent = iterator.next();
+            Control ancestor = dependent.parent;
+
+            while (ancestor != null && ancestor != this) {
+                ancestor = ancestor.parent;
+            }
+
+            if (ancestor == null) {
+                iterator.remove();
+            } else {
+                dependent.invalidateArrange();
+            }
+        }
+    }
+
+    /**
+     * @return true, if neither this element nor one of its children waits for a layout pass
+     */
+    public boolean isLayoutValid() {
+        return layoutValid;
+    }
+
+    /**
+     * Measures and arranges every element of this tree, which has been invalidated since the last layout pass.
+     * Elements, which have not changed, are skipped, so calling it more than once per frame costs nothing.
+     */
+    public void updateLayout() {
+        // arranging may change the size of children, which requires another pass
+        int passes = 0;
+
+        for (; passes < MAX_LAYOUT_PASSES && !layoutValid; passes++) {
+            layoutStatistics.count(this, Counter.LAYOUT_PASS);
+            measureLayout();
+            arrangeLayout();
+        }
+
+        // sizes have changed, which may move elements inside of their parents
+        if (passes > 0) {
+            invalidatePosition();
+        }
+
+        // the elements, which are still invalid, keep invalidating each other
+        if (!layoutValid && layoutStatistics.isEnabled()) {
+            countUnsettledLayouts();
+        }
+    }
+
+    /**
+     * Reports the invalid elements of this tree, whose children are all valid, as unsettled
+     */
+    private void countUnsettledLayouts() {
+        boolean childInvalid = false;
+
+        for (Control child : invalidChildren) {
+            if (!child.layoutValid) {
+                childInvalid = true;
+                child.countUnsettledLayouts();
+            }
+        }
+
+        if (!childInvalid) {
+            layoutStatistics.countUnsettledLayout(this);
+        }
+    }
+
+    /**
+     * Measures the invalidated elements of this tree bottom up, so that every element knows the size of its children
+     */
+    private void measureLayout() {
+        // only invalidated children are visited, so a large element with a single changed child is cheap
+        for (int i = 0; i < invalidChildren.size(); i++) {
+            Control child = invalidChildren.get(i);
+
+            if (!child.layoutValid) {
+                child.measureLayout();
+            }
+        }
+
+        if (!measureValid) {
+            measureValid = true;
+            measure();
+        }
+    }
+
+    /**
+     * Arranges the invalidated elements of this tree top down, so that every element knows the size of its parent
+     */
+    private void arrangeLayout() {
+        layoutValid = true;
+
+        // the element may have been invalidated by a parent, which has been arranged before
+        if (!measureValid) {
+            measureLayout();
+        }
+
+        if (!arrangeValid) {
+            arrangeValid = true;
+            arrangeChildren();
+            invalidateViewportDependents();
+
+            if (!isResizeListenersLocked()) {
+                invokeResizeListeners();
+            }
+        }
+
+        // arranging this element may have invalidated more children, which are appended to the list. Children,
+        // which are invalidated again while they are arranged, are left for the next pass, so that a loop ends.
+        int count = invalidChildren.size();
+
+        for (int i = 0; i < count; i++) {
+            Control child = invalidChildren.get(i);
+
+            if (!child.layoutValid) {
+                child.arrangeLayout();
+            }
+        }
+
+        invalidChildren.subList(0, count).clear();
+    }
+
+    /**
+     * Marks this element and its parents, so that the next layout pass finds this element
+     */
+    private void invalidateLayoutPath() {
+        for (Control current = this; current != null && current.layoutValid; current = current.parent) {
+            current.layoutValid = false;
+
+            if (current.parent != null) {
+                current.parent.invalidChildren.add(current);
+            }
+        }
+
+        ownerContext.requestRedraw();
+    }
+
+    /**
+     * Invalidates the layout after the size of this element has changed. The children have to be placed again
+     * and the parent may depend on the size of this element.
+     */
+    private void invalidateSize() {
+        invalidateArrange();
+
+        if (parent != null) {
+            parent.onChildSizeChanged(this);
+        }
+    }
+
+    /**
+     * Called, when the bounding size of a child has changed. By default this element is measured again.
+     * @param child
+     */
+    protected void onChildSizeChanged(Control child) {
+        invalidateMeasure();
+    }
+
+    /**
+     * Called, when a child has to be placed again, e.g. because it stretches now. By default all children are arranged again.
+     * @param child
+     */
+    protected void onChildPlacementChanged(Control child) {
+        invalidateArrange();
+    }
+    
+    /**
+     * Marks a part of the element as changed, e.g. a blinking caret. Only this area is repainted in the next frame,
+     * so the change must not affect the size of the element or any area outside of it.
+     * @param x relative to the upper left corner of the element (inside of the margin)
+     * @param y relative to the upper left corner of the element (inside of the margin)
+     * @param width
+     * @param height
+     */
+    protected void invalidateVisual(float x, float y, float width, float height) {
+        visualValid = false;
+
+        // the cached layers of the parents include this element, but their areas stay the same
+        for (Control currentParent = parent; currentParent != null && currentParent.visualValid; currentParent = currentParent.parent) {
+            currentParent.visualValid = false;
+        }
+
+        ownerContext.getDirtyRegion().invalidate(getAbsoluteX() + x, getAbsoluteY() + y, width, height);
+        ownerContext.requestRedraw();
+    }
+    
+    /**
+     * Lay out and draw the element and all of its children, if visible
+     * @param g
      */
     public void drawControl(PGraphics g) {
+    	updateLayout();
+    	
+    	Canvas canvas = new Canvas(g);
+    	drawControl(canvas);
+    	canvas.flush();
+    }
+    
+    /**
+     * Draw the element and all of its children on the canvas, if visible
+     * @param canvas
+     */
+    public void drawControl(Canvas canvas) {
     	if (visible) {
+            float absoluteX = getAbsoluteX();
+            float absoluteY = getAbsoluteY();
+            paintedBounds.set(absoluteX + extents.getX(), absoluteY + extents.getY(), extents.getWidth(), extents.getHeight());
+
+            // skip the element and its bindings, if neither it nor one of its children covers the visible area
+            if (extentsValid && !canvas.isVisible(paintedBounds)) {
+                return;
+            }
+
             synchronize();
 
-            g.pushMatrix();
-            g.translate(position.x + margin.getLeft(), position.y + margin.getTop());
+            canvas.pushMatrix();
+            canvas.translate(position.x + margin.getLeft(), position.y + margin.getTop());
 
-            g.noStroke();
-            g.fill(ColorUtils.colorFromString(backgroundColor));
-            g.rect(0, 0, getOffsetWidth(), getOffsetHeight());
-            g.translate(padding.getLeft(), padding.getTop());
+            switch (cacheMode) {
+                case BITMAP:
+                    drawCacheLayer(canvas, absoluteX, absoluteY);
+                    break;
+                case DISPLAY_LIST:
+                    drawDisplayList(canvas);
+                    break;
+                default:
+                    paint(canvas);
+                    break;
+            }
 
-            draw(g);
-            drawChildren(g);
+            canvas.popMatrix();
+            visualValid = true;
 
-            g.popMatrix();
+            updatePaintedBounds(absoluteX, absoluteY);
         }
     }
 
     /**
-     * @return True, if parent is visible
+     * Paints the background, the element itself and its children at the current origin
+     * @param canvas
      */
-    private boolean isParentVisible() {
-        boolean result = true;
-        Control currentParent = getParent();
+    private void paint(Canvas canvas) {
+        canvas.noStroke();
+        canvas.fill(backgroundColor);
+        canvas.rect(0, 0, getOffsetWidth(), getOffsetHeight());
+        canvas.translate(padding.getLeft(), padding.getTop());
 
-        while (currentParent != null && result) {
-            result = currentParent.isVisible();
-            currentParent = currentParent.getParent();
+        draw(canvas);
+
+        if (drawsChildrenOnGraphics.get(getClass())) {
+            drawChildren(canvas.drawDirectly());
+        } else {
+            drawChildren(canvas);
         }
+    }
 
-        return result;
+    /**
+     * Draws the cached layer of this element. The layer is rendered again, if something inside the subtree has been invalidated.
+     * @param canvas
+     * @param absoluteX
+     * @param absoluteY
+     */
+    private void drawCacheLayer(Canvas canvas, float absoluteX, float absoluteY) {
+        int layerWidth = (int) Math.ceil(getOffsetWidth());
+        int layerHeight = (int) Math.ceil(getOffsetHeight());
+
+        if (layerWidth <= 0 || layerHeight <= 0) {
+            return;
+        }
+
+        if (cacheLayer == null || cacheLayer.width != layerWidth || cacheLayer.height != layerHeight) {
+            cacheLayer = app.createGraphics(layerWidth, layerHeight, Context.getInstance().getRenderer());
+            visualValid = false;
+        }
+
+        if (!visualValid) {
+            // the layer has been cleared, so every child inside the layer has to be painted regardless of the repainted area
+            Canvas layerCanvas = new Canvas(cacheLayer);
+            layerCanvas.pushVisibleArea(absoluteX, absoluteY, layerWidth, layerHeight);
+
+            cacheLayer.beginDraw();
+            cacheLayer.clear();
+            paint(layerCanvas);
+            layerCanvas.flush();
+            cacheLayer.endDraw();
+        }
+
+        canvas.image(cacheLayer, 0, 0);
+    }
+
+    /**
+     * Replays the recorded drawing calls of this element. The calls are recorded again, if something inside the subtree has been invalidated.
+     * @param canvas
+     */
+    private void drawDisplayList(Canvas canvas) {
+        if (displayList == null) {
+            displayList = new DisplayList();
+        } else if (visualValid && displayList.isComplete()) {
+            displayList.replay(canvas);
+            return;
+        }
+
+        // the recording is replayed regardless of the visible area, so every child has to be recorded
+        canvas.pushUnlimitedVisibleArea();
+        canvas.beginRecording(displayList);
+        paint(canvas);
+        canvas.endRecording(displayList);
+        canvas.popVisibleArea();
+    }
+
+    /**
+     * Stores the area covered by this element and its children, so that it can be skipped, if it is not part of the repainted area.
+     * @param absoluteX
+     * @param absoluteY
+     */
+    private void updatePaintedBounds(float absoluteX, float absoluteY) {
+        extents.set(0, 0, getOffsetWidth(), getOffsetHeight());
+
+        if (!isClippingChildren() && cacheMode != CacheMode.BITMAP) {
+            for (Control child : children) {
+                if (child.isVisible() && child.extentsValid) {
+                    Bounds childBounds = child.paintedBounds;
+                    extents.union(childBounds.getX() - absoluteX, childBounds.getY() - absoluteY, childBounds.getWidth(), childBounds.getHeight());
+                }
+            }
+        }
+
+        paintedBounds.set(absoluteX + extents.getX(), absoluteY + extents.getY(), extents.getWidth(), extents.getHeight());
+        extentsValid = true;
+    }
+
+    /**
+     * @return True, if parent is visible
+     */
+    private boolean isParentVisible() {
+        validateAbsolutePosition();
+        return parentVisible;
     }
 
     /**
@@ -688,116 +1372,111 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     /**
      * Mouse move event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#mouseMoved(MouseEvent)} of the root, which only visits
+     * the elements under the pointer. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleMouseMoved(MouseEvent event) {
-        PVector absPos = getAbsolutePosition();
-        isMouseOver = event.getX() >= absPos.x && event.getX() <= absPos.x + getOffsetWidth() && event.getY() >= absPos.y && event.getY() <= absPos.y + getOffsetHeight() && isParentVisible() && isVisible();
-
-        for (Control child : children) {
-            child.handleMouseMoved(event);
-        }
+        requireInputDispatcher().mouseMoved(event);
+    }
 
+    /**
+     * Calls {@link #hoverEnter()} or {@link #hoverLeave()}, if the mouse has entered or left the element since the last call
+     */
+    protected void updateHover() {
         if (isMouseOver && !isMouseOverTriggered) {
             isMouseOverTriggered = true;
             hoverEnter();
+            invalidateVisual();
         } else if (!isMouseOver && isMouseOverTriggered) {
             isMouseOverTriggered = false;
             hoverLeave();
+            invalidateVisual();
         }
     }
 
     /**
      * Mouse click event
      * @param event
-     * @return
+     * @return true, if a control has been clicked
+     * @deprecated forwards the event to {@link InputDispatcher#mouseClicked(MouseEvent)} of the root. Use the dispatcher directly.
      */
+    @Deprecated
     public boolean handleMouseClicked(MouseEvent event) {
-        PVector absPos = getAbsolutePosition();
-        isMouseOver = event.getX() >= absPos.x && event.getX() <= absPos.x + getOffsetWidth() && event.getY() >= absPos.y && event.getY() <= absPos.y + getOffsetHeight() && isParentVisible() && isVisible();
-
-        boolean childClicked = false;
-
-        for (int i = children.size() - 1; i >= 0 && !childClicked; i--) {
-            Control child = children.get(i);
-            childClicked = child.handleMouseClicked(event);
-        }
+        return requireInputDispatcher().mouseClicked(event);
+    }
 
-        if (isMouseOver && !childClicked) {
-            isClicked = true;
-            dragStart = new PVector(event.getX(), event.getY());
-            click(event);
-            invokeClickListeners();
-        } else {
-        	isClicked = false;
-            clickBeside(event);
-        }
+    /**
+     * Marks the element as clicked and informs it and its click listeners
+     * @param event
+     */
+    protected void performClick(MouseEvent event) {
+        isClicked = true;
+        dragStart.set(event.getX(), event.getY());
+        click(event);
+        invokeClickListeners();
+    }
 
-        return isMouseOver || childClicked;
+    /**
+     * Informs the element, that another element has been clicked
+     * @param event
+     */
+    protected void performClickBeside(MouseEvent event) {
+        isClicked = false;
+        clickBeside(event);
     }
     
     /**
      * Mouse drag event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#mouseDragged(MouseEvent)} of the root, which only informs
+     * the element capturing the pointer. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleMouseDrag(MouseEvent event) {
-    	if (isClicked) {
-    		PVector dragTarget = new PVector(event.getX(), event.getY());
-    		PVector movement = PVector.sub(dragTarget, dragStart);
-    		dragStart = dragTarget;
-    		drag(movement.normalize(), event.isShiftDown());
-    	}
-    	
-    	for (Control child : children) {
-    		child.handleMouseDrag(event);
-    	}
+    	requireInputDispatcher().mouseDragged(event);
     }
 
     /**
      * Key pressed event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#keyPressed(KeyEvent)} of the root, whose {@link FocusManager}
+     * informs the focused element and its parents. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleKeyPressed(KeyEvent event) {
-        keyPressed(event);
-
-        for (Control child : children) {
-            child.handleKeyPressed(event);
-        }
+        requireInputDispatcher().keyPressed(event);
     }
 
     /**
      * Key released event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#keyReleased(KeyEvent)} of the root. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleKeyReleased(KeyEvent event) {
-        keyReleased(event);
-
-        for (Control child : children) {
-            child.handleKeyReleased(event);
-        }
+        requireInputDispatcher().keyReleased(event);
     }
     
     /**
      * Mouse pressed event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#mousePressed(MouseEvent)} of the root, which lets the pressed
+     * element capture the pointer. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleMousePressed(MouseEvent event) {
-    	mousePressed(event);
-    	
-    	for (Control child : children) {
-            child.mousePressed(event);
-        }
+    	requireInputDispatcher().mousePressed(event);
     }
     
     /**
      * Mouse released event
      * @param event
+     * @deprecated forwards the event to {@link InputDispatcher#mouseReleased(MouseEvent)} of the root. Use the dispatcher directly.
      */
+    @Deprecated
     public void handleMouseReleased(MouseEvent event) {
-    	mouseReleased(event);
-    	
-    	for (Control child : children) {
-            child.handleMouseReleased(event);
-        }
+    	requireInputDispatcher().mouseReleased(event);
     }
     
     /**
@@ -816,29 +1495,147 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
      * @return the absolute position
      */
     public PVector getAbsolutePosition() {
-        PVector absolutePosition = new PVector(0, 0);
-        Control currentParent = getParent();
+        validateAbsolutePosition();
+        return new PVector(absoluteX, absoluteY);
+    }
+
+    /**
+     * @return the x component of the absolute position without allocating a vector
+     */
+    public float getAbsoluteX() {
+        validateAbsolutePosition();
+        return absoluteX;
+    }
+
+    /**
+     * @return the y component of the absolute position without allocating a vector
+     */
+    public float getAbsoluteY() {
+        validateAbsolutePosition();
+        return absoluteY;
+    }
+
+    /**
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @return true, if the point lies inside of the element and the element and all of its parents are visible
+     */
+    public boolean isHit(float x, float y) {
+        validateAbsolutePosition();
+
+        return x >= absoluteX && x <= absoluteX + getOffsetWidth() && y >= absoluteY && y <= absoluteY + getOffsetHeight()
+                && parentVisible && isVisible();
+    }
+
+    /**
+     * Marks the cached absolute positions of all elements of the context, which has created this element, as outdated.
+     * Called, whenever an element or its children may have moved, e.g. because the children have been placed again
+     * or have been removed. The positions are calculated again, when they are read.
+     */
+    protected void invalidateAbsolutePositions() {
+        ownerContext.invalidatePositions();
+
+        // the children are indexed again, because their positions inside of this element may have changed
+        HitTestIndex.invalidateEntries(this);
+        invalidateHitBounds();
+    }
+
+    /**
+     * Marks the cached absolute positions as outdated after this element has moved, e.g. because its position,
+     * margin or visibility has changed. The positions of its children inside of it stay the same.
+     */
+    private void invalidatePosition() {
+        ownerContext.invalidatePositions();
+        invalidateHitBounds();
+    }
+
+    /**
+     * Marks the bounds of this element and its parents, which can be hit, as outdated, so that the {@link HitTestIndex}
+     * updates them on the next query. Each parent only updates the entry of the child on the path to this element.
+     * The bounds of the other elements stay valid, because they are relative to their parents.
+     */
+    private void invalidateHitBounds() {
+        hitBoundsValid = false;
+
+        // a recorded child has already marked its parents
+        for (Control child = this; child.parent != null && HitTestIndex.invalidateEntry(child.parent, child); child = child.parent) {
+            child.parent.hitBoundsValid = false;
+        }
+    }
+
+    /**
+     * @return the horizontal position of this element relative to the position of its parent, before the content offset of the parent is applied
+     */
+    float getPositionInParentX() {
+        float x = offsetPosition.x + position.x + margin.getLeft();
 
-        while (currentParent != null) {
-            absolutePosition.add(currentParent.position);
-            absolutePosition.add(currentParent.offsetPosition);
-            absolutePosition.add(new PVector(currentParent.getMargin().getLeft(), currentParent.getMargin().getTop()));
-            absolutePosition.add(new PVector(currentParent.getPadding().getLeft(), currentParent.getPadding().getTop()));
-            currentParent = currentParent.getParent();
+        if (parent != null) {
+            x += parent.padding.getLeft() + parent.getChildOffsetX(this);
         }
 
-        absolutePosition.add(offsetPosition);
-        absolutePosition.add(position);
-        absolutePosition.add(new PVector(margin.getLeft(), margin.getTop()));
-        return absolutePosition;
+        return x;
     }
 
     /**
-     * Informs all resize listeners
+     * @return the vertical position of this element relative to the position of its parent, before the content offset of the parent is applied
+     */
+    float getPositionInParentY() {
+        float y = offsetPosition.y + position.y + margin.getTop();
+
+        if (parent != null) {
+            y += parent.padding.getTop() + parent.getChildOffsetY(this);
+        }
+
+        return y;
+    }
+
+    /**
+     * Calculates the absolute position and the visibility of the parents from the cached values of the parent,
+     * if an element may have moved since they have been cached
+     */
+    private void validateAbsolutePosition() {
+        int generation = ownerContext.getPositionGeneration();
+
+        if (cachedGeneration == generation) {
+            return;
+        }
+
+        float x = offsetPosition.x + position.x + margin.getLeft();
+        float y = offsetPosition.y + position.y + margin.getTop();
+        boolean visibleParents = true;
+
+        if (parent != null) {
+            parent.validateAbsolutePosition();
+            x += parent.absoluteX + parent.padding.getLeft() + parent.getContentOffsetX() + parent.getChildOffsetX(this);
+            y += parent.absoluteY + parent.padding.getTop() + parent.getContentOffsetY() + parent.getChildOffsetY(this);
+            visibleParents = parent.parentVisible && parent.isVisible();
+        }
+
+        absoluteX = x;
+        absoluteY = y;
+        parentVisible = visibleParents;
+        cachedGeneration = generation;
+    }
+
+    /**
+     * Informs all resize listeners. Called by the layout pass, after the element has been arranged.
      */
     protected void invokeResizeListeners() {
-        for (ResizeListener listener : resizeListeners) {
-            listener.onControlResize(getOffsetWidth(), getOffsetHeight());
+        layoutStatistics.count(this, Counter.RESIZE_LISTENERS);
+
+        // a listener, which resizes this element again while it is informed, would start a loop
+        if (resizeDepth > 0) {
+            layoutStatistics.countResizeLoop(this);
+        }
+
+        resizeDepth++;
+
+        try {
+            for (ResizeListener listener : resizeListeners) {
+                listener.onControlResize(getOffsetWidth(), getOffsetHeight());
+            }
+        } finally {
+            resizeDepth--;
         }
     }
 
@@ -864,31 +1661,159 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
     }
     
     /**
-     * Render all children
+     * Render all children. If a subclass still overrides the deprecated {@link #drawChildren(PGraphics)}, it is called instead.
+     * @param canvas
      */
-    protected void drawChildren(PGraphics g) {
+    protected void drawChildren(Canvas canvas) {
         for (Control child : children) {
-            child.drawControl(g);
+            child.drawControl(canvas);
         }
     }
+
+    /**
+     * Render all children directly on the graphics, whose origin is the origin of the content.
+     * By default the children are rendered by {@link #drawChildren(Canvas)}.
+     * @param g
+     * @deprecated override {@link #drawChildren(Canvas)} instead. Display lists, which record the element, cannot be replayed,
+     * because they miss the calls on the graphics.
+     */
+    @Deprecated
+    protected void drawChildren(PGraphics g) {
+        Canvas canvas = new Canvas(g);
+        drawChildren(canvas);
+        canvas.flush();
+    }
+
+    /**
+     * @param type
+     * @param name
+     * @return true, if the class or one of its super classes below Control declares the method taking the graphics
+     */
+    private static boolean overridesGraphicsMethod(Class<?> type, String name) {
+        for (Class<?> current = type; current != Control.class; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod(name, PGraphics.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // continue with the super class
+            }
+        }
+
+        return false;
+    }
     
     /**
      * Remove all children
      */
     public void clear() {
+    	invalidateVisual();
+    	invalidateMeasure();
+    	invalidateAbsolutePositions();
+    	invalidChildren.clear();
+    	
     	for (int i = children.size() - 1; i >= 0; i--) {
     		Control removed = children.remove(i);
-    		controlIds.remove(removed.getId());
+    		removed.ownerContext.getControlIds().remove(removed.getId(), removed);
     		removed.resizeListeners.clear();
     		
     		removed.clear();
     	}
     }
     
+    /**
+     * Releases the element and all of its children. They are removed from the id lookup and lose their bindings
+     * and listeners, so that they can be garbage collected. The elements must not be used afterwards.
+     */
+    public void dispose() {
+        for (Control child : children) {
+            child.dispose();
+        }
+
+        if (id != null) {
+            ownerContext.getControlIds().remove(id, this);
+        }
+
+        clearBindings();
+        resizeListeners.clear();
+        clickListeners.clear();
+    }
+    
+    /**
+     * @return true, if the children are only visible inside the bounds of this element
+     */
+    protected boolean isClippingChildren() {
+        return false;
+    }
+
+    /**
+     * @return the horizontal offset, which is applied to the children of this element, e.g. by scrolling
+     */
+    protected float getContentOffsetX() {
+        return 0;
+    }
+
+    /**
+     * @return the vertical offset, which is applied to the children of this element, e.g. by scrolling
+     */
+    protected float getContentOffsetY() {
+        return 0;
+    }
+
+    /**
+     * @param child
+     * @return the horizontal offset of a child, which is placed by this element without changing its position, e.g. inside a stack
+     */
+    protected float getChildOffsetX(Control child) {
+        return 0;
+    }
+
+    /**
+     * @param child
+     * @return the vertical offset of a child, which is placed by this element without changing its position, e.g. inside a stack
+     */
+    protected float getChildOffsetY(Control child) {
+        return 0;
+    }
+    
     protected void setup() {
 
     }
 
+    /**
+     * Calculates the size of the element, e.g. from its content. Called by the layout pass after the children have been measured.
+     */
+    protected void measure() {
+
+    }
+
+    /**
+     * Places the children inside of this element. Called by the layout pass after this element has been measured.
+     * By default every child is sized by {@link #onControlResize(float, float)} based on the size of this element.
+     */
+    protected void arrangeChildren() {
+        for (Control child : children) {
+            child.onControlResize(getOffsetWidth(), getOffsetHeight());
+        }
+    }
+
+    /**
+     * Draws the element, whose origin is the current origin of the canvas. By default the deprecated
+     * {@link #draw(PGraphics)} is called, if a subclass still overrides it.
+     * @param canvas
+     */
+    protected void draw(Canvas canvas) {
+        if (drawsOnGraphics.get(getClass())) {
+            draw(canvas.drawDirectly());
+        }
+    }
+
+    /**
+     * Draws the element directly on the graphics, whose origin is the origin of the element
+     * @param g
+     * @deprecated override {@link #draw(Canvas)} instead. Display lists, which record the element, cannot be replayed,
+     * because they miss the calls on the graphics.
+     */
+    @Deprecated
     protected void draw(PGraphics g) {
 
     }
@@ -909,6 +1834,14 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
 
     }
 
+    protected void focusEnter() {
+
+    }
+
+    protected void focusLeave() {
+
+    }
+
     protected void keyPressed(KeyEvent event) {
 
     }
@@ -929,6 +1862,22 @@ public abstract class Control extends PropertyChangedObserver implements ResizeL
 
 	}
     
+    /**
+     * Called, while the element is dragged. By default the deprecated {@link #drag(PVector, boolean)} is called
+     * with the direction of the movement.
+     * @param args the position and the movement since the last drag event
+     */
+    protected void drag(DragEventArgs args) {
+    	drag(new PVector(args.getDeltaX(), args.getDeltaY()).normalize(), args.isPrecise());
+    }
+
+    /**
+     * Called, while the element is dragged
+     * @param dragDirection the normalized direction of the movement since the last drag event
+     * @param precise true, if the shift key is pressed
+     * @deprecated override {@link #drag(DragEventArgs)} instead, which also offers the distance of the movement
+     */
+    @Deprecated
     protected void drag(PVector dragDirection, boolean precise) {
     	
     }
@@ -0,0 +1,220 @@
+package com.hansen.processing.ui.controls;
+
+import com.hansen.processing.ui.listener.FocusChangedListener;
+
+import processing.core.PConstants;
+import processing.event.KeyEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class tracks the element of a tree, which has the keyboard focus. Key events are delivered to the focused element
+ * and then to its parents, so delivering a key costs the depth of the focused element instead of the size of the tree.
+ * If no element is focused, only the root receives the key events.
+ * <p>
+ * Tab moves the focus to the next focusable element in drawing order, shift and tab to the previous one. Elements
+ * are informed by {@link Control#focusEnter()} and {@link Control#focusLeave()}, everyone else by a {@link FocusChangedListener}.
+ * @author Florian Hansen
+ *
+ */
+public class FocusManager {
+
+    private final Control root;
+    private Control focusedControl;
+    private List<FocusChangedListener> focusChangedListeners = new ArrayList<>();
+
+    public FocusManager(Control root) {
+        this.root = root;
+        root.setFocusManager(this);
+    }
+
+    /**
+     * @return the root of the tree, whose focus is managed
+     */
+    public Control getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the focused element or null, if no element has the focus
+     */
+    public Control getFocusedControl() {
+        validateFocus();
+        return focusedControl;
+    }
+
+    /**
+     * Moves the focus to an element
+     * @param control the element or null to remove the focus
+     * @return true, if the element has the focus now, false, if it cannot be focused
+     */
+    public boolean setFocusedControl(Control control) {
+        if (control != null && (!control.isFocusable() || !isFocusReachable(control))) {
+            return false;
+        }
+
+        if (control == focusedControl) {
+            return true;
+        }
+
+        Control previous = focusedControl;
+        focusedControl = control;
+
+        if (previous != null) {
+            previous.isFocused = false;
+            previous.focusLeave();
+            previous.invalidateVisual();
+        }
+
+        if (control != null) {
+            control.isFocused = true;
+            control.focusEnter();
+            control.invalidateVisual();
+        }
+
+        for (FocusChangedListener listener : focusChangedListeners) {
+            listener.onFocusChange(previous, control);
+        }
+
+        return true;
+    }
+
+    /**
+     * Focuses the element itself or its nearest parent, which can be focused, e.g. after it has been clicked.
+     * If there is none, the focus is removed.
+     * @param control
+     */
+    public void focusAt(Control control) {
+        while (control != null && !control.isFocusable()) {
+            control = control.getParent();
+        }
+
+        setFocusedControl(control);
+    }
+
+    /**
+     * Moves the focus to the next or previous focusable element in drawing order. The search continues at the other end of the tree.
+     * @param forward
+     * @return true, if an element has got the focus
+     */
+    public boolean moveFocus(boolean forward) {
+        List<Control> focusableControls = new ArrayList<>();
+        collectFocusableControls(root, focusableControls);
+
+        if (focusableControls.isEmpty()) {
+            return false;
+        }
+
+        int index = focusableControls.indexOf(getFocusedControl());
+        int count = focusableControls.size();
+
+        if (index < 0) {
+            index = forward ? 0 : count - 1;
+        } else {
+            index = (index + (forward ? 1 : count - 1)) % count;
+        }
+
+        return setFocusedControl(focusableControls.get(index));
+    }
+
+    /**
+     * Key pressed event
+     * @param event
+     */
+    public void keyPressed(KeyEvent event) {
+        if (event.getKey() == PConstants.TAB) {
+            moveFocus(!event.isShiftDown());
+            return;
+        }
+
+        for (Control control = getFocusTarget(); control != null; control = control.getParent()) {
+            control.keyPressed(event);
+        }
+    }
+
+    /**
+     * Key released event
+     * @param event
+     */
+    public void keyReleased(KeyEvent event) {
+        if (event.getKey() == PConstants.TAB) {
+            return;
+        }
+
+        for (Control control = getFocusTarget(); control != null; control = control.getParent()) {
+            control.keyReleased(event);
+        }
+    }
+
+    /**
+     * Adds a listener, which is informed, whenever the focus moves
+     * @param listener
+     */
+    public void addFocusChangedListener(FocusChangedListener listener) {
+        focusChangedListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     * @param listener
+     */
+    public void removeFocusChangedListener(FocusChangedListener listener) {
+        focusChangedListeners.remove(listener);
+    }
+
+    /**
+     * @return the element, which receives the key events first
+     */
+    private Control getFocusTarget() {
+        Control focused = getFocusedControl();
+        return focused != null ? focused : root;
+    }
+
+    /**
+     * Removes the focus, if the focused element has been removed from the tree or hidden
+     */
+    private void validateFocus() {
+        if (focusedControl != null && !isFocusReachable(focusedControl)) {
+            setFocusedControl(null);
+        }
+    }
+
+    /**
+     * @param control
+     * @return true, if the element and all of its parents are visible and belong to this tree
+     */
+    private boolean isFocusReachable(Control control) {
+        for (; control != null; control = control.getParent()) {
+            if (!control.isVisible()) {
+                return false;
+            }
+
+            if (control == root) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Collects the visible elements, which can be focused, in drawing order
+     * @param control
+     * @param focusableControls
+     */
+    private void collectFocusableControls(Control control, List<Control> focusableControls) {
+        if (!control.isVisible()) {
+            return;
+        }
+
+        if (control.isFocusable()) {
+            focusableControls.add(control);
+        }
+
+        for (int i = 0; i < control.children.size(); i++) {
+            collectFocusableControls(control.children.get(i), focusableControls);
+        }
+    }
+
+}
@@ -1,12 +1,14 @@
 package com.hansen.processing.ui.controls;
 
+import com.hansen.processing.ui.adapters.ColorAdapter;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.singleton.GradientCache;
 import com.hansen.processing.ui.utils.ColorUtils;
-import com.hansen.processing.ui.utils.ImageUtils;
 
-import processing.core.PGraphics;
 import processing.core.PImage;
 
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 /**
  * Base class for all text element with linear gradient background
@@ -19,24 +21,28 @@ public abstract class GradientTextControl extends TextControl {
     protected PImage backgroundHover;
 
     private float borderRadius;
-    private String colorTop;
-    private String colorBottom;
-    private String colorTopHover;
-    private String colorBottomHover;
+    private int colorTop = ColorUtils.TRANSPARENT;
+    private int colorBottom = ColorUtils.TRANSPARENT;
+    private int colorTopHover = ColorUtils.TRANSPARENT;
+    private int colorBottomHover = ColorUtils.TRANSPARENT;
+    private boolean backgroundValid;
+    private int backgroundWidth;
+    private int backgroundHeight;
 
     public GradientTextControl() {
         super();
     }
 
     @Override
-    protected void draw(PGraphics g) {
-        if (!isMouseOver) {
-            g.image(background, -getPadding().getLeft(), -getPadding().getTop());
-        } else {
-            g.image(backgroundHover, -getPadding().getLeft(), -getPadding().getTop());
+    protected void draw(Canvas canvas) {
+        resolveBackground();
+        PImage image = isMouseOver ? backgroundHover : background;
+
+        if (image != null) {
+            canvas.image(image, -getPadding().getLeft(), -getPadding().getTop());
         }
 
-        super.draw(g);
+        super.draw(canvas);
     }
 
     /**
@@ -51,7 +57,8 @@ public abstract class GradientTextControl extends TextControl {
      * @return top color of linear gradient
      */
     @XmlAttribute(name = "ColorTop")
-    public String getColorTop() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getColorTop() {
         return colorTop;
     }
 
@@ -59,7 +66,8 @@ public abstract class GradientTextControl extends TextControl {
      * @return bottom color of linear gradient
      */
     @XmlAttribute(name = "ColorBottom")
-    public String getColorBottom() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getColorBottom() {
         return colorBottom;
     }
 
@@ -67,7 +75,8 @@ public abstract class GradientTextControl extends TextControl {
      * @return top color of linear gradient when hovered
      */
     @XmlAttribute(name = "ColorHoverTop")
-    public String getColorTopHover() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getColorTopHover() {
         return colorTopHover;
     }
 
@@ -75,7 +84,8 @@ public abstract class GradientTextControl extends TextControl {
      * @return bottom color of linear gradient when hovered
      */
     @XmlAttribute(name = "ColorHoverBottom")
-    public String getColorBottomHover() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getColorBottomHover() {
         return colorBottomHover;
     }
 
@@ -85,7 +95,7 @@ public abstract class GradientTextControl extends TextControl {
      */
     public void setBorderRadius(float borderRadius) {
         this.borderRadius = borderRadius;
-        update();
+        invalidateBackground();
     }
 
     /**
@@ -93,8 +103,16 @@ public abstract class GradientTextControl extends TextControl {
      * @param colorTop
      */
     public void setColorTop(String colorTop) {
+        setColorTop(ColorUtils.colorFromString(colorTop));
+    }
+
+    /**
+     * Sets the top color of the gradient as ARGB value
+     * @param colorTop
+     */
+    public void setColorTop(int colorTop) {
         this.colorTop = colorTop;
-        update();
+        invalidateBackground();
     }
 
     /**
@@ -102,8 +120,16 @@ public abstract class GradientTextControl extends TextControl {
      * @param colorBottom
      */
     public void setColorBottom(String colorBottom) {
+        setColorBottom(ColorUtils.colorFromString(colorBottom));
+    }
+
+    /**
+     * Sets the bottom color of the gradient as ARGB value
+     * @param colorBottom
+     */
+    public void setColorBottom(int colorBottom) {
         this.colorBottom = colorBottom;
-        update();
+        invalidateBackground();
     }
 
     /**
@@ -111,8 +137,16 @@ public abstract class GradientTextControl extends TextControl {
      * @param colorTopHover
      */
     public void setColorTopHover(String colorTopHover) {
+        setColorTopHover(ColorUtils.colorFromString(colorTopHover));
+    }
+
+    /**
+     * Sets the top color of the gradient when hovered as ARGB value
+     * @param colorTopHover
+     */
+    public void setColorTopHover(int colorTopHover) {
         this.colorTopHover = colorTopHover;
-        update();
+        invalidateBackground();
     }
 
     /**
@@ -120,25 +154,45 @@ public abstract class GradientTextControl extends TextControl {
      * @param colorTopHover
      */
     public void setColorBottomHover(String colorBottomHover) {
+        setColorBottomHover(ColorUtils.colorFromString(colorBottomHover));
+    }
+
+    /**
+     * Sets the bottom color of the gradient when hovered as ARGB value
+     * @param colorBottomHover
+     */
+    public void setColorBottomHover(int colorBottomHover) {
         this.colorBottomHover = colorBottomHover;
-        update();
+        invalidateBackground();
     }
 
-    @Override
-    protected void update() {
-        super.update();
-
-        if (getOffsetWidth() > 0 && getOffsetHeight() > 0) {
-            int cT = ColorUtils.colorFromString(colorTop);
-            int cB = ColorUtils.colorFromString(colorBottom);
-            background = ImageUtils.generateGradient(app, cT, cB, (int) getOffsetWidth(), (int) getOffsetHeight());
-            background.mask(ImageUtils.generateMask(app, (int) getOffsetWidth(), (int) getOffsetHeight(), (int) borderRadius));
-
-            int cTHover = ColorUtils.colorFromString(colorTopHover);
-            int cBHover = ColorUtils.colorFromString(colorBottomHover);
-            backgroundHover = ImageUtils.generateGradient(app, cTHover, cBHover, (int) getOffsetWidth(), (int) getOffsetHeight());
-            backgroundHover.mask(ImageUtils.generateMask(app, (int) getOffsetWidth(), (int) getOffsetHeight(), (int) borderRadius));
+    /**
+     * Marks the background images as outdated, so they are looked up again before the next draw
+     */
+    protected void invalidateBackground() {
+        backgroundValid = false;
+        invalidateVisual();
+    }
+
+    /**
+     * Looks up the background images in the shared gradient cache, if the colors, the size
+     * or the border radius have changed since the last lookup
+     */
+    private void resolveBackground() {
+        int width = (int) getOffsetWidth();
+        int height = (int) getOffsetHeight();
+
+        if (backgroundValid && width == backgroundWidth && height == backgroundHeight) {
+            return;
         }
+
+        GradientCache cache = GradientCache.getInstance();
+        background = cache.get(colorTop, colorBottom, width, height, (int) borderRadius);
+        backgroundHover = cache.get(colorTopHover, colorBottomHover, width, height, (int) borderRadius);
+
+        backgroundWidth = width;
+        backgroundHeight = height;
+        backgroundValid = true;
     }
 
 }
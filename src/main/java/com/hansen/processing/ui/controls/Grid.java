@@ -1,20 +1,21 @@
 package com.hansen.processing.ui.controls;
 
-import com.hansen.processing.ui.listener.ResizeListener;
-import com.hansen.processing.ui.structures.Tuple;
-
-import processing.core.PGraphics;
-import processing.core.PVector;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.singleton.LayoutStatistics;
+import com.hansen.processing.ui.singleton.LayoutStatistics.Counter;
 
 import javax.xml.bind.annotation.*;
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 /**
  * The Grid separates an area into smaller areas defined by rows and columns.
+ * <p>
+ * The sizes and positions of the rows and columns are kept in arrays indexed by their number. Each child knows
+ * the cell it covers, so layout and drawing only look at the children instead of every cell of the grid.
  * @author Florian Hansen
  *
  */
@@ -22,51 +23,36 @@ import java.util.Map;
 @XmlAccessorType(XmlAccessType.NONE)
 public class Grid extends Control {
 
+    private static final LayoutStatistics layoutStatistics = LayoutStatistics.getInstance();
+
     private List<RowDefinition> rowDefinitions;
     private List<ColumnDefinition> columnDefinitions;
 
-    private HashMap<RowDefinition, Float> rowHeights;
-    private HashMap<RowDefinition, PVector> rowPositions;
-    private HashMap<ColumnDefinition, Float> columnWidths;
-    private HashMap<ColumnDefinition, PVector> columnPositions;
-    private HashMap<RowDefinition, HashMap<ColumnDefinition, Control>> mappedChildren;
-    private HashMap<Control, Tuple<RowDefinition, ColumnDefinition>> childPositions;
-    private HashMap<Control, Integer> childColumnSpans;
-    private HashMap<Control, Integer> childRowSpans;
+    private float[] rowHeights = new float[0];
+    private float[] rowPositions = new float[1];
+    private float[] columnWidths = new float[0];
+    private float[] columnPositions = new float[1];
+
+    // the cell of each child, indexed like the children
+    private int[] childRows = new int[8];
+    private int[] childColumns = new int[8];
+    private int[] childRowSpans = new int[8];
+    private int[] childColumnSpans = new int[8];
 
     public Grid() {
         super();
         rowDefinitions = new ArrayList<>();
         columnDefinitions = new ArrayList<>();
-
-        rowHeights = new HashMap<>();
-        rowPositions = new HashMap<>();
-        columnWidths = new HashMap<>();
-        columnPositions = new HashMap<>();
-        mappedChildren = new HashMap<>();
-        childPositions = new HashMap<>();
-        childColumnSpans = new HashMap<>();
-        childRowSpans = new HashMap<>();
     }
 
     @Override
-    public void drawChildren(PGraphics g) {
-    	// render each separated area
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            for (ColumnDefinition columnDefinition : columnDefinitions) {
-                float x = columnPositions.get(columnDefinition).x;
-                float y = rowPositions.get(rowDefinition).y;
-
-                app.pushMatrix();
-                app.translate(x, y);
-
-                if (hasChildAt(rowDefinition, columnDefinition)) {
-                    Control child = getChildAt(rowDefinition, columnDefinition);
-                    child.drawControl(g);
-                }
-
-                app.popMatrix();
-            }
+    public void drawChildren(Canvas canvas) {
+    	// render each child inside its area
+        for (int i = 0; i < children.size(); i++) {
+            canvas.pushMatrix();
+            canvas.translate(columnPositions[getColumn(i)], rowPositions[getRow(i)]);
+            children.get(i).drawControl(canvas);
+            canvas.popMatrix();
         }
     }
 
@@ -79,14 +65,20 @@ public class Grid extends Control {
 
     @Override
     public void setWidth(float width) {
-        super.setWidth(width);
-        update();
+        // star columns share the width of the grid
+        if (width != getWidth()) {
+            super.setWidth(width);
+            update();
+        }
     }
 
     @Override
     public void setHeight(float height) {
-        super.setHeight(height);
-        update();
+        // star rows share the height of the grid
+        if (height != getHeight()) {
+            super.setHeight(height);
+            update();
+        }
     }
 
     @Override
@@ -114,22 +106,21 @@ public class Grid extends Control {
      */
     public void addChild(Control child, int row, int column, int rowSpan, int columnSpan) {
         super.addChild(child);
-        addResizeListener(child);
 
-        RowDefinition rowDefinition = rowDefinitions.get(row);
-        ColumnDefinition columnDefinition = columnDefinitions.get(column);
+        int index = children.size() - 1;
 
-        if (!mappedChildren.containsKey(rowDefinition)) {
-            mappedChildren.put(rowDefinition, new HashMap<>());
+        if (index >= childRows.length) {
+            int capacity = Math.max(index + 1, childRows.length * 2);
+            childRows = Arrays.copyOf(childRows, capacity);
+            childColumns = Arrays.copyOf(childColumns, capacity);
+            childRowSpans = Arrays.copyOf(childRowSpans, capacity);
+            childColumnSpans = Arrays.copyOf(childColumnSpans, capacity);
         }
 
-        mappedChildren.get(rowDefinition).put(columnDefinition, child);
-        childPositions.put(child, new Tuple<>(rowDefinition, columnDefinition));
-        childColumnSpans.put(child, columnSpan);
-        childRowSpans.put(child, rowSpan);
-
-        updateChildOffsetPositionAt(rowDefinition, columnDefinition);
-        update();
+        childRows[index] = row;
+        childColumns[index] = column;
+        childRowSpans[index] = rowSpan;
+        childColumnSpans[index] = columnSpan;
     }
 
     @Override
@@ -167,45 +158,40 @@ public class Grid extends Control {
     }
 
     @Override
-    protected void invokeResizeListeners() {
-    	// we need to override this method to inform listeners about grid area sizes they relate on
-    	
-        for (ResizeListener listener : resizeListeners) {
-            if (listener instanceof Control && children.contains(listener)) {
-                Control child = (Control) listener;
-                Tuple<RowDefinition, ColumnDefinition> childPosition = childPositions.get(child);
-                int columnSpan = childColumnSpans.get(child);
-                int rowSpan = childRowSpans.get(child);
-
-                RowDefinition rowDefinition = childPosition.first;
-                ColumnDefinition columnDefinition = childPosition.second;
-
-                // calculate the area width and height
-                float width = 0.0f;
-                float height = 0.0f;
-
-                for (int i = 0; i < columnSpan; i++) {
-                    int next = columnDefinitions.indexOf(columnDefinition) + i;
-
-                    if (next < columnDefinitions.size()) {
-                        ColumnDefinition nextColumnDefinition = columnDefinitions.get(next);
-                        width += columnWidths.get(nextColumnDefinition);
-                    }
-                }
-
-                for (int i = 0; i < rowSpan; i++) {
-                    int next = rowDefinitions.indexOf(rowDefinition) + i;
+    protected void measure() {
+        layoutStatistics.count(this, Counter.GRID_UPDATE);
+        calculateRowHeights();
+        calculateColumnWidths();
 
-                    if (next < rowDefinitions.size()) {
-                        RowDefinition nextRowDefinition = rowDefinitions.get(next);
-                        height += rowHeights.get(nextRowDefinition);
-                    }
-                }
+        if (!isFit()) {
+            float height = padding.getTop() + padding.getBottom();
 
-                listener.onControlResize(width, height);
-            } else {
-                listener.onControlResize(getBoundingWidth(), getBoundingHeight());
+            for (float rowHeight : rowHeights) {
+                height += rowHeight;
             }
+
+            // the rows have just been calculated, so they must not be invalidated by the new height
+            super.setHeight(height);
+        }
+    }
+
+    @Override
+    protected void arrangeChildren() {
+        updateRowPositions();
+        updateColumnPositions();
+        updateChildOffsetPositions();
+
+        // every child is sized by the area it covers instead of the whole grid
+        for (int i = 0; i < children.size(); i++) {
+            int row = getRow(i);
+            int column = getColumn(i);
+            int rowEnd = Math.min(row + Math.max(childRowSpans[i], 1), rowHeights.length);
+            int columnEnd = Math.min(column + Math.max(childColumnSpans[i], 1), columnWidths.length);
+
+            float width = columnPositions[Math.max(columnEnd, column)] - columnPositions[column];
+            float height = rowPositions[Math.max(rowEnd, row)] - rowPositions[row];
+
+            children.get(i).onControlResize(width, height);
         }
     }
 
@@ -213,10 +199,26 @@ public class Grid extends Control {
      * Get the child at a specific location inside the grid
      * @param rowDefinition
      * @param columnDefinition
-     * @return
+     * @return the child, which has been added last to the cell, or null
      */
     public Control getChildAt(RowDefinition rowDefinition, ColumnDefinition columnDefinition) {
-        return mappedChildren.get(rowDefinition).get(columnDefinition);
+        return getChildAt(rowDefinitions.indexOf(rowDefinition), columnDefinitions.indexOf(columnDefinition));
+    }
+
+    /**
+     * Get the child at a specific location inside the grid
+     * @param row
+     * @param column
+     * @return the child, which has been added last to the cell, or null
+     */
+    public Control getChildAt(int row, int column) {
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (childRows[i] == row && childColumns[i] == column) {
+                return children.get(i);
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -226,7 +228,39 @@ public class Grid extends Control {
      * @return
      */
     public boolean hasChildAt(RowDefinition rowDefinition, ColumnDefinition columnDefinition) {
-        return mappedChildren.containsKey(rowDefinition) && mappedChildren.get(rowDefinition).containsKey(columnDefinition);
+        return getChildAt(rowDefinition, columnDefinition) != null;
+    }
+
+    /**
+     * @param row
+     * @return the height of the row in pixels, which has been calculated by the last layout pass
+     */
+    public float getRowHeight(int row) {
+        return rowHeights[row];
+    }
+
+    /**
+     * @param row
+     * @return the vertical position of the row relative to the content of the grid
+     */
+    public float getRowPosition(int row) {
+        return rowPositions[row];
+    }
+
+    /**
+     * @param column
+     * @return the width of the column in pixels, which has been calculated by the last layout pass
+     */
+    public float getColumnWidth(int column) {
+        return columnWidths[column];
+    }
+
+    /**
+     * @param column
+     * @return the horizontal position of the column relative to the content of the grid
+     */
+    public float getColumnPosition(int column) {
+        return columnPositions[column];
     }
 
 
@@ -274,7 +308,6 @@ public class Grid extends Control {
      */
     public void addRowDefinition(RowDefinition rowDefinition) {
         rowDefinitions.add(rowDefinition);
-        rowHeights.put(rowDefinition, 0.0f);
         update();
     }
 
@@ -284,87 +317,68 @@ public class Grid extends Control {
      */
     public void addColumnDefinition(ColumnDefinition columnDefinition) {
         columnDefinitions.add(columnDefinition);
-        columnWidths.put(columnDefinition, 0.0f);
         update();
     }
 
     /**
-     * Updates the cells of this grid
+     * Updates the cells of this grid in the next layout pass
      */
     public void update() {
-        calculateRowHeights();
-        calculateColumnWidths();
-
-        if (!isFit()) {
-            float height = padding.getTop() + padding.getBottom();
-
-            for (float rowHeight : rowHeights.values()) {
-                height += rowHeight;
-            }
-
-            this.height = height;
-        }
-
-        updateRowPositions();
-        updateColumnPositions();
-        updateChildOffsetPositions();
-
-        invokeResizeListeners();
+        invalidateMeasure();
     }
 
     /**
      * Calculates every row height
      */
     public void calculateRowHeights() {
-        float fills = getFillsVertical();
-        float freeSpace = getFreeSpaceVertical();
+        if (rowHeights.length != rowDefinitions.size()) {
+            rowHeights = new float[rowDefinitions.size()];
+            rowPositions = new float[rowDefinitions.size() + 1];
+        }
 
-        rowHeights.clear();
+        Arrays.fill(rowHeights, 0.0f);
 
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            float rowHeight = rowDefinition.getPatternValue();
+        // auto rows are as high as their highest child
+        for (int i = 0; i < children.size() && rowHeights.length > 0; i++) {
+            int row = getRow(i);
 
-            if (rowDefinition.getPattern().contains("*")) {
-                rowHeight = rowHeight / fills * freeSpace;
-            } else if (rowDefinition.getPattern().equalsIgnoreCase("Auto")) {
-                rowHeight = getMaxChildHeight(rowDefinition);
+            if (rowDefinitions.get(row).getUnitType() == GridUnitType.AUTO) {
+                rowHeights[row] = Math.max(rowHeights[row], children.get(i).getBoundingHeight());
             }
-
-            rowHeights.put(rowDefinition, rowHeight);
         }
+
+        calculateTracks(rowDefinitions, rowHeights, height);
     }
 
     /**
      * Calculates every column width
      */
     public void calculateColumnWidths() {
-        float fills = getFillsHorizontal();
-        float freeSpace = getFreeSpaceHorizontal();
+        if (columnWidths.length != columnDefinitions.size()) {
+            columnWidths = new float[columnDefinitions.size()];
+            columnPositions = new float[columnDefinitions.size() + 1];
+        }
 
-        columnWidths.clear();
+        Arrays.fill(columnWidths, 0.0f);
 
-        for (ColumnDefinition columnDefinition : columnDefinitions) {
-            float columnWidth = columnDefinition.getPatternValue();
+        // auto columns are as wide as their widest child
+        for (int i = 0; i < children.size() && columnWidths.length > 0; i++) {
+            int column = getColumn(i);
 
-            if (columnDefinition.getPattern().contains("*")) {
-                columnWidth = columnWidth / fills * freeSpace;
-            } else if (columnDefinition.getPattern().equalsIgnoreCase("Auto")) {
-                columnWidth = getMaxChildWidth(columnDefinition);
+            if (columnDefinitions.get(column).getUnitType() == GridUnitType.AUTO) {
+                columnWidths[column] = Math.max(columnWidths[column], children.get(i).getBoundingWidth());
             }
-
-            columnWidths.put(columnDefinition, columnWidth);
         }
 
+        calculateTracks(columnDefinitions, columnWidths, width);
     }
 
     /**
      * Updates the offset positions of every child
      */
     public void updateChildOffsetPositions() {
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            for (ColumnDefinition columnDefinition : columnDefinitions) {
-                updateChildOffsetPositionAt(rowDefinition, columnDefinition);
-            }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).setOffsetPosition(columnPositions[getColumn(i)], rowPositions[getRow(i)]);
         }
     }
 
@@ -372,145 +386,79 @@ public class Grid extends Control {
      * Updates all row positions
      */
     public void updateRowPositions() {
-        rowPositions.clear();
-
-        PVector rowPosition = new PVector(0, 0);
-
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            rowPositions.put(rowDefinition, rowPosition.copy());
-            rowPosition.y += rowHeights.get(rowDefinition);
-        }
+        calculatePositions(rowHeights, rowPositions);
     }
 
     /**
      * Updates all column positions
      */
     public void updateColumnPositions() {
-        columnPositions.clear();
-
-        PVector columnPosition = new PVector(0, 0);
-
-        for (ColumnDefinition columnDefinition : columnDefinitions) {
-            columnPositions.put(columnDefinition, columnPosition.copy());
-            columnPosition.x += columnWidths.get(columnDefinition);
-        }
+        calculatePositions(columnWidths, columnPositions);
     }
 
     /**
-     * Updates child offset position at a specific cell
-     * @param rowDefinition
-     * @param columnDefinition
-     */
-    private void updateChildOffsetPositionAt(RowDefinition rowDefinition, ColumnDefinition columnDefinition) {
-        if (hasChildAt(rowDefinition, columnDefinition)) {
-            PVector offsetPosition = new PVector();
-            offsetPosition.x = columnPositions.get(columnDefinition).x;
-            offsetPosition.y = rowPositions.get(rowDefinition).y;
-
-            Control child = getChildAt(rowDefinition, columnDefinition);
-            child.setOffsetPosition(offsetPosition);
-        }
-    }
-
-    /**
-     * @param rowDefinition
-     * @return the height of the child, which has the highest height
+     * Calculates the sizes of the pixel and star tracks. The sizes of auto tracks have to be calculated before.
+     * @param definitions
+     * @param sizes
+     * @param space the size of the grid, which is shared by the tracks
      */
-    private float getMaxChildHeight(RowDefinition rowDefinition) {
-        float height = 0.0f;
-
-        if (mappedChildren.containsKey(rowDefinition)) {
-            for (ColumnDefinition columnDefinition : mappedChildren.get(rowDefinition).keySet()) {
-                if (hasChildAt(rowDefinition, columnDefinition)) {
-                    Control child = mappedChildren.get(rowDefinition).get(columnDefinition);
-
-                    if (child.getBoundingHeight() > height) {
-                        height = child.getBoundingHeight();
-                    }
-                }
+    private static void calculateTracks(List<? extends PatternDefinition> definitions, float[] sizes, float space) {
+        float fills = 0.0f;
+        float freeSpace = space;
+
+        for (int i = 0; i < sizes.length; i++) {
+            PatternDefinition definition = definitions.get(i);
+
+            switch (definition.getUnitType()) {
+                case STAR:
+                    fills += definition.getPatternValue();
+                    break;
+                case PIXEL:
+                    sizes[i] = definition.getPatternValue();
+                    freeSpace -= sizes[i];
+                    break;
+                default:
+                    freeSpace -= sizes[i];
+                    break;
             }
         }
 
-        return height;
-    }
-
-    /**
-     * @param columnDefinition
-     * @return the width of the child, which has the widest width
-     */
-    private float getMaxChildWidth(ColumnDefinition columnDefinition) {
-        float width = 0.0f;
-
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            if (hasChildAt(rowDefinition, columnDefinition)) {
-                Control child = mappedChildren.get(rowDefinition).get(columnDefinition);
+        // the free space is shared by the star tracks based on their values
+        for (int i = 0; i < sizes.length; i++) {
+            PatternDefinition definition = definitions.get(i);
 
-                if (child.getBoundingWidth() > width) {
-                    width = child.getBoundingWidth();
-                }
+            if (definition.getUnitType() == GridUnitType.STAR) {
+                sizes[i] = definition.getPatternValue() / fills * freeSpace;
             }
         }
-
-        return width;
     }
 
     /**
-     * @return free vertical space
+     * Sums up the sizes of the tracks, so that each track starts where the previous one ends
+     * @param sizes
+     * @param positions has one more element than sizes, the last one is the end of the last track
      */
-    private float getFreeSpaceVertical() {
-        float space = height;
+    private static void calculatePositions(float[] sizes, float[] positions) {
+        positions[0] = 0.0f;
 
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            if (!rowDefinition.getPattern().contains("*") && rowHeights.containsKey(rowDefinition)) {
-                space -= rowHeights.get(rowDefinition);
-            }
+        for (int i = 0; i < sizes.length; i++) {
+            positions[i + 1] = positions[i] + sizes[i];
         }
-
-        return space;
     }
 
     /**
-     * @return free horizontal space
+     * @param index of the child
+     * @return the row of the child, limited to the existing rows
      */
-    private float getFreeSpaceHorizontal() {
-        float space = width;
-
-        for (ColumnDefinition columnDefinition : columnDefinitions) {
-            if (!columnDefinition.getPattern().contains("*") && columnWidths.containsKey(columnDefinition)) {
-                space -= columnWidths.get(columnDefinition);
-            }
-        }
-
-        return space;
+    private int getRow(int index) {
+        return Math.max(0, Math.min(childRows[index], rowHeights.length - 1));
     }
 
     /**
-     * @return number of parts, which divide the vertical free space
+     * @param index of the child
+     * @return the column of the child, limited to the existing columns
      */
-    private float getFillsVertical() {
-        float n = 0.0f;
-
-        for (RowDefinition rowDefinition : rowDefinitions) {
-            if (rowDefinition.getPattern().contains("*")) {
-                n += rowDefinition.getPatternValue();
-            }
-        }
-
-        return n;
-    }
-
-    /**
-     * @return number of parts, which divide the horizontal free space
-     */
-    private float getFillsHorizontal() {
-        float n = 0.0f;
-
-        for (ColumnDefinition columnDefinition : columnDefinitions) {
-            if (columnDefinition.getPattern().contains("*")) {
-                n += columnDefinition.getPatternValue();
-            }
-        }
-
-        return n;
+    private int getColumn(int index) {
+        return Math.max(0, Math.min(childColumns[index], columnWidths.length - 1));
     }
 }
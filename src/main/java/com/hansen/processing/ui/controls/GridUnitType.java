@@ -0,0 +1,25 @@
+package com.hansen.processing.ui.controls;
+
+/**
+ * Defines how the size of a row or column inside a grid is calculated.
+ * @author Florian Hansen
+ *
+ */
+public enum GridUnitType {
+
+	/**
+	 * The size is given in pixels, e.g. {@code 120}.
+	 */
+	PIXEL,
+	
+	/**
+	 * The size is the size of the largest child, e.g. {@code Auto}.
+	 */
+	AUTO,
+	
+	/**
+	 * The size is a weighted share of the space left by the other rows or columns, e.g. {@code 2*}.
+	 */
+	STAR
+	
+}
@@ -0,0 +1,607 @@
+package com.hansen.processing.ui.controls;
+
+import java.util.Arrays;
+
+/**
+ * This class answers, which control of a tree is the topmost one under a point. Every control keeps the bounds of itself
+ * and its children, which can be hit, relative to its own position. A query descends from the root only into the children,
+ * whose bounds contain the point, from the last drawn child to the first one, so the first control containing the point
+ * is the one on top. Elements with many children sort the bounds of their children into a uniform grid of cells, so only
+ * the few children overlapping the cell of the point are tested. A query visits the depth of the tree instead of all
+ * of its controls.
+ * <p>
+ * The bounds are clipped to the content of the parents, which clip their children (e.g. a ScrollViewer), so hidden parts
+ * of a control are not hit. The bounds are relative, so they stay valid, if a parent moves or scrolls. Whenever an element
+ * moves, resizes or changes its visibility, it marks itself and records itself at its parent. On the next query each
+ * marked parent only updates the entries of its recorded children and the cells covering them, the subtrees of the other
+ * elements are not visited. Only an element, whose children have been added, removed or placed again, indexes all of its
+ * children again.
+ * @author Florian Hansen
+ *
+ */
+public class HitTestIndex {
+
+    private static final float CELL_SIZE = 64.0f;
+
+    // elements with fewer visible children test all of them
+    private static final int GRID_THRESHOLD = 16;
+
+    // the relative bounds are rounded differently than the absolute positions, which are used for the exact test
+    private static final float TOLERANCE = 0.5f;
+
+    private final Control root;
+
+    public HitTestIndex(Control root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the root of the indexed tree
+     */
+    public Control getRoot() {
+        return root;
+    }
+
+    /**
+     * Searches the topmost visible control under a point. Pending layout changes are applied first.
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @return the control or null, if no control lies under the point
+     */
+    public Control getControlAt(float x, float y) {
+        root.updateLayout();
+
+        if (!root.isVisible()) {
+            return null;
+        }
+
+        validate(root);
+        return hit(root, x, y);
+    }
+
+    /**
+     * Updates the bounds of all elements on the next query, e.g. after an element has changed its bounds without marking itself
+     */
+    public void invalidate() {
+        invalidate(root);
+    }
+
+    private void invalidate(Control control) {
+        control.hitBoundsValid = false;
+        invalidateEntries(control);
+
+        for (int i = 0; i < control.children.size(); i++) {
+            invalidate(control.children.get(i));
+        }
+    }
+
+    /**
+     * Indexes all children of an element again on the next query, e.g. because they have been placed again or removed
+     * @param control
+     */
+    static void invalidateEntries(Control control) {
+        if (control.hitTestNode != null) {
+            control.hitTestNode.entriesValid = false;
+        }
+    }
+
+    /**
+     * Records a child, whose bounds have changed, so that the parent only updates the entry of this child on the next query
+     * @param parent
+     * @param child
+     * @return false, if the child has already been recorded, so that the parents of the parent have already been marked
+     */
+    static boolean invalidateEntry(Control parent, Control child) {
+        Node node = parent.hitTestNode;
+
+        if (node == null || !node.entriesValid) {
+            return true;
+        }
+
+        Node childNode = child.hitTestNode;
+
+        // a child without an entry has become visible or has been added, so its position in the drawing order is unknown
+        if (childNode == null || childNode.entryParent != parent) {
+            node.entriesValid = false;
+            return true;
+        }
+
+        if (childNode.recorded) {
+            return false;
+        }
+
+        childNode.recorded = true;
+        node.addRecorded(child);
+        return true;
+    }
+
+    /**
+     * Updates the bounds of a marked element and of its marked children
+     * @param control
+     */
+    private void validate(Control control) {
+        Node node = control.hitTestNode;
+
+        if (node == null) {
+            node = new Node();
+            control.hitTestNode = node;
+        } else if (control.hitBoundsValid) {
+            return;
+        }
+
+        if (!node.entriesValid || !updateEntries(control, node)) {
+            rebuildEntries(control, node);
+        }
+
+        node.left = 0;
+        node.top = 0;
+        node.right = control.getOffsetWidth();
+        node.bottom = control.getOffsetHeight();
+
+        // the children of a clipping element can only be hit inside of its content, which lies inside of the element
+        if (node.size > 0 && !control.isClippingChildren()) {
+            float contentOffsetX = control.getContentOffsetX();
+            float contentOffsetY = control.getContentOffsetY();
+            node.left = Math.min(node.left, contentOffsetX + node.childrenLeft);
+            node.top = Math.min(node.top, contentOffsetY + node.childrenTop);
+            node.right = Math.max(node.right, contentOffsetX + node.childrenRight);
+            node.bottom = Math.max(node.bottom, contentOffsetY + node.childrenBottom);
+        }
+
+        control.hitBoundsValid = true;
+    }
+
+    /**
+     * Indexes all visible children of an element
+     * @param control
+     * @param node
+     */
+    private void rebuildEntries(Control control, Node node) {
+        // children, which have been removed, must not update this element anymore
+        for (int i = 0; i < node.size; i++) {
+            Node childNode = node.children[i].hitTestNode;
+
+            if (childNode.entryParent == control) {
+                childNode.entryParent = null;
+            }
+        }
+
+        node.clearRecorded();
+
+        int previousSize = node.size;
+        node.size = 0;
+
+        for (int i = 0; i < control.children.size(); i++) {
+            Control child = control.children.get(i);
+
+            if (!child.isVisible()) {
+                continue;
+            }
+
+            validate(child);
+
+            Node childNode = child.hitTestNode;
+            float childX = child.getPositionInParentX();
+            float childY = child.getPositionInParentY();
+            childNode.entryParent = control;
+            childNode.entry = node.size;
+            node.add(child, childX + childNode.left, childY + childNode.top, childX + childNode.right, childY + childNode.bottom);
+        }
+
+        // removed children must not be kept alive
+        if (node.size < previousSize) {
+            Arrays.fill(node.children, node.size, previousSize, null);
+        }
+
+        node.updateChildrenBounds();
+        node.buildCells();
+        node.entriesValid = true;
+    }
+
+    /**
+     * Updates the entries of the recorded children of an element
+     * @param control
+     * @param node
+     * @return false, if the children have to be indexed again, e.g. because a recorded child has been hidden or removed
+     */
+    private boolean updateEntries(Control control, Node node) {
+        for (int i = 0; i < node.recordedSize; i++) {
+            Control child = node.recordedChildren[i];
+            Node childNode = child.hitTestNode;
+
+            if (child.parent != control || !child.isVisible() || childNode.entryParent != control) {
+                return false;
+            }
+
+            validate(child);
+            childNode.recorded = false;
+
+            float childX = child.getPositionInParentX();
+            float childY = child.getPositionInParentY();
+            node.update(childNode.entry, childX + childNode.left, childY + childNode.top, childX + childNode.right, childY + childNode.bottom);
+        }
+
+        node.clearRecorded();
+        node.validateBounds();
+        return true;
+    }
+
+    /**
+     * Searches the topmost control under a point inside of an element and its children
+     * @param control
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @return the control or null
+     */
+    private Control hit(Control control, float x, float y) {
+        Node node = control.hitTestNode;
+        float controlLeft = control.getAbsoluteX();
+        float controlTop = control.getAbsoluteY();
+        float localX = x - controlLeft;
+        float localY = y - controlTop;
+
+        if (localX < node.left - TOLERANCE || localY < node.top - TOLERANCE
+                || localX > node.right + TOLERANCE || localY > node.bottom + TOLERANCE) {
+            return null;
+        }
+
+        if (node.size > 0 && isInsideContent(control, controlLeft, controlTop, x, y)) {
+            // the bounds of the children do not contain the content offset, so they stay valid while scrolling
+            float childX = localX - control.getContentOffsetX();
+            float childY = localY - control.getContentOffsetY();
+
+            if (node.columns > 0) {
+                int column = (int) Math.floor((childX - node.gridLeft) / node.cellSize);
+                int row = (int) Math.floor((childY - node.gridTop) / node.cellSize);
+
+                if (column >= 0 && row >= 0 && column < node.columns && row < node.rows) {
+                    int cell = row * node.columns + column;
+                    int[] entries = node.cells[cell];
+
+                    // the entries of a cell are sorted by drawing order, so the first hit from the end is the topmost control
+                    for (int i = node.cellSizes[cell] - 1; i >= 0; i--) {
+                        Control hit = hitChild(node, entries[i], x, y, childX, childY);
+
+                        if (hit != null) {
+                            return hit;
+                        }
+                    }
+                }
+            } else {
+                for (int i = node.size - 1; i >= 0; i--) {
+                    Control hit = hitChild(node, i, x, y, childX, childY);
+
+                    if (hit != null) {
+                        return hit;
+                    }
+                }
+            }
+        }
+
+        if (x >= controlLeft && y >= controlTop && x <= controlLeft + control.getOffsetWidth() && y <= controlTop + control.getOffsetHeight()) {
+            return control;
+        }
+
+        return null;
+    }
+
+    /**
+     * Searches the topmost control under a point inside of a child, if the bounds of the child contain the point
+     * @param node the node of the parent
+     * @param index index of the child in the node
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @param childX relative to the children of the parent
+     * @param childY relative to the children of the parent
+     * @return the control or null
+     */
+    private Control hitChild(Node node, int index, float x, float y, float childX, float childY) {
+        int entry = index * 4;
+
+        if (childX < node.bounds[entry] - TOLERANCE || childY < node.bounds[entry + 1] - TOLERANCE
+                || childX > node.bounds[entry + 2] + TOLERANCE || childY > node.bounds[entry + 3] + TOLERANCE) {
+            return null;
+        }
+
+        return hit(node.children[index], x, y);
+    }
+
+    /**
+     * @param control
+     * @param controlLeft
+     * @param controlTop
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @return true, if the children of the element can be hit at the point
+     */
+    private boolean isInsideContent(Control control, float controlLeft, float controlTop, float x, float y) {
+        if (!control.isClippingChildren()) {
+            return true;
+        }
+
+        float contentLeft = controlLeft + control.padding.getLeft();
+        float contentTop = controlTop + control.padding.getTop();
+
+        return x >= contentLeft && y >= contentTop && x <= contentLeft + control.getWidth() && y <= contentTop + control.getHeight();
+    }
+
+    /**
+     * Bounds of an element and its children, which can be hit, and the bounds of its visible children
+     * @author Florian Hansen
+     *
+     */
+    static final class Node {
+
+        // bounds of the element and its children relative to the position of the element
+        private float left;
+        private float top;
+        private float right;
+        private float bottom;
+
+        // visible children in drawing order and their bounds relative to the position of the element, without the content offset
+        private Control[] children = new Control[4];
+        private float[] bounds = new float[16];
+        private int size;
+        private boolean entriesValid;
+
+        // bounds of all entries, which are searched again, if an entry on their border has shrunk
+        private float childrenLeft;
+        private float childrenTop;
+        private float childrenRight;
+        private float childrenBottom;
+        private boolean childrenBoundsValid;
+
+        // children, whose bounds have changed since the last query
+        private Control[] recordedChildren = new Control[4];
+        private int recordedSize;
+
+        // the parent, whose entries contain this element, the index of its entry and whether it has been recorded there
+        private Control entryParent;
+        private int entry;
+        private boolean recorded;
+
+        private float gridLeft;
+        private float gridTop;
+        private float cellSize;
+        private int columns;
+        private int rows;
+        private boolean cellsValid;
+
+        // indices of the entries overlapping each cell in drawing order
+        private int[][] cells;
+        private int[] cellSizes;
+
+        private void add(Control child, float entryLeft, float entryTop, float entryRight, float entryBottom) {
+            if (size == children.length) {
+                children = Arrays.copyOf(children, size * 2);
+                bounds = Arrays.copyOf(bounds, size * 8);
+            }
+
+            children[size] = child;
+            bounds[size * 4] = entryLeft;
+            bounds[size * 4 + 1] = entryTop;
+            bounds[size * 4 + 2] = entryRight;
+            bounds[size * 4 + 3] = entryBottom;
+            size++;
+        }
+
+        /**
+         * Replaces the bounds of an entry and moves it to the cells covering the new bounds
+         * @param index
+         * @param entryLeft
+         * @param entryTop
+         * @param entryRight
+         * @param entryBottom
+         */
+        private void update(int index, float entryLeft, float entryTop, float entryRight, float entryBottom) {
+            int entry = index * 4;
+            float previousLeft = bounds[entry];
+            float previousTop = bounds[entry + 1];
+            float previousRight = bounds[entry + 2];
+            float previousBottom = bounds[entry + 3];
+
+            if (entryLeft == previousLeft && entryTop == previousTop && entryRight == previousRight && entryBottom == previousBottom) {
+                return;
+            }
+
+            if (columns > 0 && cellsValid) {
+                removeFromCells(index);
+            }
+
+            bounds[entry] = entryLeft;
+            bounds[entry + 1] = entryTop;
+            bounds[entry + 2] = entryRight;
+            bounds[entry + 3] = entryBottom;
+
+            // the cells only cover the bounds, which the entries have had when the grid has been built
+            if (columns > 0 && cellsValid) {
+                if (entryLeft - TOLERANCE >= gridLeft && entryTop - TOLERANCE >= gridTop
+                        && entryRight + TOLERANCE < gridLeft + columns * cellSize && entryBottom + TOLERANCE < gridTop + rows * cellSize) {
+                    addToCells(index);
+                } else {
+                    cellsValid = false;
+                }
+            }
+
+            // the bounds of all entries grow with the entry, but have to be searched again, if the entry has been on their border
+            if ((previousLeft <= childrenLeft && entryLeft > previousLeft) || (previousTop <= childrenTop && entryTop > previousTop)
+                    || (previousRight >= childrenRight && entryRight < previousRight) || (previousBottom >= childrenBottom && entryBottom < previousBottom)) {
+                childrenBoundsValid = false;
+            } else {
+                childrenLeft = Math.min(childrenLeft, entryLeft);
+                childrenTop = Math.min(childrenTop, entryTop);
+                childrenRight = Math.max(childrenRight, entryRight);
+                childrenBottom = Math.max(childrenBottom, entryBottom);
+            }
+        }
+
+        /**
+         * Searches the bounds of all entries and builds the cells again, if an update has invalidated them
+         */
+        private void validateBounds() {
+            if (!childrenBoundsValid) {
+                updateChildrenBounds();
+            }
+
+            if (!cellsValid) {
+                buildCells();
+            }
+        }
+
+        /**
+         * Calculates the bounds of all entries
+         */
+        private void updateChildrenBounds() {
+            childrenLeft = Float.POSITIVE_INFINITY;
+            childrenTop = Float.POSITIVE_INFINITY;
+            childrenRight = Float.NEGATIVE_INFINITY;
+            childrenBottom = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < size * 4; i += 4) {
+                childrenLeft = Math.min(childrenLeft, bounds[i]);
+                childrenTop = Math.min(childrenTop, bounds[i + 1]);
+                childrenRight = Math.max(childrenRight, bounds[i + 2]);
+                childrenBottom = Math.max(childrenBottom, bounds[i + 3]);
+            }
+
+            childrenBoundsValid = true;
+        }
+
+        private void addRecorded(Control child) {
+            if (recordedSize == recordedChildren.length) {
+                recordedChildren = Arrays.copyOf(recordedChildren, recordedSize * 2);
+            }
+
+            recordedChildren[recordedSize++] = child;
+        }
+
+        /**
+         * Forgets the recorded children
+         */
+        private void clearRecorded() {
+            for (int i = 0; i < recordedSize; i++) {
+                recordedChildren[i].hitTestNode.recorded = false;
+                recordedChildren[i] = null;
+            }
+
+            recordedSize = 0;
+        }
+
+        /**
+         * Sorts the children into the cells covering their bounds, if there are enough of them. Each cell lists its children in drawing order.
+         * The cells cover the bounds of all entries.
+         */
+        private void buildCells() {
+            cellsValid = true;
+
+            if (size < GRID_THRESHOLD) {
+                columns = 0;
+                rows = 0;
+                cells = null;
+                cellSizes = null;
+                return;
+            }
+
+            gridLeft = childrenLeft - TOLERANCE;
+            gridTop = childrenTop - TOLERANCE;
+            float gridRight = childrenRight + TOLERANCE;
+            float gridBottom = childrenBottom + TOLERANCE;
+
+            // larger cells for large elements of few children, so the number of cells stays proportional to the number of children
+            cellSize = CELL_SIZE;
+            columns = (int) ((gridRight - gridLeft) / cellSize) + 1;
+            rows = (int) ((gridBottom - gridTop) / cellSize) + 1;
+
+            while ((long) columns * rows > 4L * size + 64) {
+                cellSize *= 2;
+                columns = (int) ((gridRight - gridLeft) / cellSize) + 1;
+                rows = (int) ((gridBottom - gridTop) / cellSize) + 1;
+            }
+
+            int cellCount = columns * rows;
+
+            if (cells == null || cells.length < cellCount) {
+                cells = Arrays.copyOf(cells != null ? cells : new int[0][], cellCount);
+                cellSizes = new int[cellCount];
+            } else {
+                Arrays.fill(cellSizes, 0, cellCount, 0);
+            }
+
+            // the entries are added in drawing order, so every cell stays sorted
+            for (int i = 0; i < size; i++) {
+                addToCells(i);
+            }
+        }
+
+        /**
+         * Inserts an entry into the cells covering its bounds, keeping the drawing order of each cell
+         * @param index
+         */
+        private void addToCells(int index) {
+            int lastColumn = getColumn(bounds[index * 4 + 2] + TOLERANCE);
+            int lastRow = getRow(bounds[index * 4 + 3] + TOLERANCE);
+
+            for (int row = getRow(bounds[index * 4 + 1] - TOLERANCE); row <= lastRow; row++) {
+                for (int column = getColumn(bounds[index * 4] - TOLERANCE); column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+                    int count = cellSizes[cell];
+                    int[] entries = cells[cell];
+
+                    if (entries == null) {
+                        entries = new int[4];
+                        cells[cell] = entries;
+                    } else if (count == entries.length) {
+                        entries = Arrays.copyOf(entries, count * 2);
+                        cells[cell] = entries;
+                    }
+
+                    int position = count;
+
+                    if (count > 0 && entries[count - 1] > index) {
+                        position = -Arrays.binarySearch(entries, 0, count, index) - 1;
+                        System.arraycopy(entries, position, entries, position + 1, count - position);
+                    }
+
+                    entries[position] = index;
+                    cellSizes[cell] = count + 1;
+                }
+            }
+        }
+
+        /**
+         * Removes an entry from the cells covering its bounds
+         * @param index
+         */
+        private void removeFromCells(int index) {
+            int lastColumn = getColumn(bounds[index * 4 + 2] + TOLERANCE);
+            int lastRow = getRow(bounds[index * 4 + 3] + TOLERANCE);
+
+            for (int row = getRow(bounds[index * 4 + 1] - TOLERANCE); row <= lastRow; row++) {
+                for (int column = getColumn(bounds[index * 4] - TOLERANCE); column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+                    int position = Arrays.binarySearch(cells[cell], 0, cellSizes[cell], index);
+                    System.arraycopy(cells[cell], position + 1, cells[cell], position, cellSizes[cell] - position - 1);
+                    cellSizes[cell]--;
+                }
+            }
+        }
+
+        /**
+         * @param x
+         * @return the column of the cells covering the x coordinate
+         */
+        private int getColumn(float x) {
+            return Math.max(0, Math.min(columns - 1, (int) ((x - gridLeft) / cellSize)));
+        }
+
+        /**
+         * @param y
+         * @return the row of the cells covering the y coordinate
+         */
+        private int getRow(float y) {
+            return Math.max(0, Math.min(rows - 1, (int) ((y - gridTop) / cellSize)));
+        }
+
+    }
+
+}
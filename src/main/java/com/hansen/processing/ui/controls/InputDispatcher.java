@@ -0,0 +1,214 @@
+package com.hansen.processing.ui.controls;
+
+import com.hansen.processing.ui.events.DragEventArgs;
+
+import processing.event.KeyEvent;
+import processing.event.MouseEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class delivers the pointer events of a window to the controls of a tree. The control under the pointer is found
+ * by a {@link HitTestIndex}, instead of asking every control of the tree, whether it contains the pointer.
+ * <p>
+ * The topmost control under the pointer and its parents, which contain the pointer, are hovered. On every move the new
+ * hover path is compared with the previous one, so only the elements, which the pointer has entered or left, are informed
+ * and the rest of the tree is not visited. A click is delivered to the topmost control and moves the keyboard focus
+ * to it or its nearest focusable parent. The previously clicked element is informed, that it has been clicked beside.
+ * Key events are routed by the {@link FocusManager}.
+ * <p>
+ * The element, which gets a mouse press, captures the pointer: it receives all drag events and the release directly,
+ * until the mouse is released, even if the pointer leaves it. The movement is delivered in a reused {@link DragEventArgs}.
+ * @author Florian Hansen
+ *
+ */
+public class InputDispatcher {
+
+    private final Control root;
+    private final HitTestIndex hitTestIndex;
+    private final FocusManager focusManager;
+    private Control clickedControl;
+    private Control capturedControl;
+    private final DragEventArgs dragEventArgs = new DragEventArgs();
+    private float dragX;
+    private float dragY;
+    private List<Control> hoverPath = new ArrayList<>();
+    private List<Control> previousHoverPath = new ArrayList<>();
+
+    public InputDispatcher(Control root) {
+        this.root = root;
+        this.hitTestIndex = new HitTestIndex(root);
+        this.focusManager = new FocusManager(root);
+        root.setInputDispatcher(this);
+    }
+
+    /**
+     * @return the root of the tree, which receives the events
+     */
+    public Control getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the manager of the keyboard focus of the tree
+     */
+    public FocusManager getFocusManager() {
+        return focusManager;
+    }
+
+    /**
+     * Searches the topmost visible control under a point
+     * @param x in window coordinates
+     * @param y in window coordinates
+     * @return the control or null, if no control lies under the point
+     */
+    public Control getControlAt(float x, float y) {
+        return hitTestIndex.getControlAt(x, y);
+    }
+
+    /**
+     * Mouse move event
+     * @param event
+     */
+    public void mouseMoved(MouseEvent event) {
+        Control target = getControlAt(event.getX(), event.getY());
+
+        List<Control> previous = hoverPath;
+        hoverPath = previousHoverPath;
+        previousHoverPath = previous;
+        hoverPath.clear();
+
+        // the topmost control and its parents, which contain the pointer, ordered from the deepest element to the root
+        for (Control control = target; control != null; control = control.getParent()) {
+            if (control.isHit(event.getX(), event.getY())) {
+                hoverPath.add(control);
+            }
+        }
+
+        // only the elements of both paths may change their state
+        for (int i = 0; i < previousHoverPath.size(); i++) {
+            previousHoverPath.get(i).isMouseOver = false;
+        }
+
+        for (int i = 0; i < hoverPath.size(); i++) {
+            hoverPath.get(i).isMouseOver = true;
+        }
+
+        // the deepest elements are left first and entered last
+        for (int i = 0; i < previousHoverPath.size(); i++) {
+            previousHoverPath.get(i).updateHover();
+        }
+
+        for (int i = hoverPath.size() - 1; i >= 0; i--) {
+            hoverPath.get(i).updateHover();
+        }
+    }
+
+    /**
+     * @return the hovered elements, ordered from the topmost control under the pointer to the root
+     */
+    public List<Control> getHoverPath() {
+        return Collections.unmodifiableList(hoverPath);
+    }
+
+    /**
+     * Mouse click event
+     * @param event
+     * @return true, if a control has been clicked
+     */
+    public boolean mouseClicked(MouseEvent event) {
+        Control target = getControlAt(event.getX(), event.getY());
+
+        if (clickedControl != null && clickedControl != target) {
+            clickedControl.performClickBeside(event);
+        }
+
+        clickedControl = target;
+        focusManager.focusAt(target);
+
+        if (target != null) {
+            target.performClick(event);
+        }
+
+        return target != null;
+    }
+
+    /**
+     * Mouse pressed event. The pressed element captures the pointer, unless another element captures it already.
+     * @param event
+     */
+    public void mousePressed(MouseEvent event) {
+        if (capturedControl == null) {
+            capturedControl = getControlAt(event.getX(), event.getY());
+        }
+
+        dragX = event.getX();
+        dragY = event.getY();
+
+        if (capturedControl != null) {
+            capturedControl.mousePressed(event);
+        }
+    }
+
+    /**
+     * Mouse drag event. Only the element capturing the pointer is informed.
+     * @param event
+     */
+    public void mouseDragged(MouseEvent event) {
+        if (capturedControl == null) {
+            return;
+        }
+
+        dragEventArgs.set(event.getX(), event.getY(), event.getX() - dragX, event.getY() - dragY, event.isShiftDown());
+        dragX = event.getX();
+        dragY = event.getY();
+        capturedControl.drag(dragEventArgs);
+    }
+
+    /**
+     * Mouse released event. The element capturing the pointer is informed and releases it.
+     * @param event
+     */
+    public void mouseReleased(MouseEvent event) {
+        Control target = capturedControl != null ? capturedControl : getControlAt(event.getX(), event.getY());
+        capturedControl = null;
+
+        if (target != null) {
+            target.mouseReleased(event);
+        }
+    }
+
+    /**
+     * @return the element capturing the pointer or null, if the mouse is not pressed
+     */
+    public Control getPointerCapture() {
+        return capturedControl;
+    }
+
+    /**
+     * Redirects the drag events and the release to an element until the mouse is released
+     * @param control the element or null to stop capturing
+     */
+    public void setPointerCapture(Control control) {
+        capturedControl = control;
+    }
+
+    /**
+     * Key pressed event
+     * @param event
+     */
+    public void keyPressed(KeyEvent event) {
+        focusManager.keyPressed(event);
+    }
+
+    /**
+     * Key released event
+     * @param event
+     */
+    public void keyReleased(KeyEvent event) {
+        focusManager.keyReleased(event);
+    }
+
+}
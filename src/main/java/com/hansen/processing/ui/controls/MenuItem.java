@@ -2,10 +2,12 @@ package com.hansen.processing.ui.controls;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import com.hansen.processing.ui.adapters.ColorAdapter;
+import com.hansen.processing.ui.rendering.Canvas;
 import com.hansen.processing.ui.utils.ColorUtils;
 
-import processing.core.PGraphics;
 
 /**
  * Represents an item
@@ -15,13 +17,14 @@ import processing.core.PGraphics;
 @XmlRootElement(name = "MenuItem")
 public class MenuItem extends TextControl {
 	
-	private String hoverColor = "#20ffffff";
+	private int hoverColor = 0x20ffffff;
 	
 	/**
 	 * @return color when hovered
 	 */
 	@XmlAttribute(name = "HoverColor")
-	public String getHoverColor() {
+	@XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+	public int getHoverColor() {
 		return hoverColor;
 	}
 	
@@ -30,17 +33,26 @@ public class MenuItem extends TextControl {
 	 * @param hoverColor
 	 */
 	public void setHoverColor(String hoverColor) {
+		setHoverColor(ColorUtils.colorFromString(hoverColor));
+	}
+	
+	/**
+	 * Sets hover color as ARGB value
+	 * @param hoverColor
+	 */
+	public void setHoverColor(int hoverColor) {
 		this.hoverColor = hoverColor;
+		invalidateVisual();
 	}
 
     @Override
-    protected void draw(PGraphics g) {
+    protected void draw(Canvas canvas) {
         if (isMouseOver) {
-            g.fill(ColorUtils.colorFromString(hoverColor));
-            g.rect(-getPadding().getLeft(), -getPadding().getTop(), getOffsetWidth(), getOffsetHeight());
+            canvas.fill(hoverColor);
+            canvas.rect(-getPadding().getLeft(), -getPadding().getTop(), getOffsetWidth(), getOffsetHeight());
         }
 
-        super.draw(g);
+        super.draw(canvas);
     }
 
     @Override
@@ -13,6 +13,7 @@ public abstract class PatternDefinition {
 
     private String pattern;
     private float patternValue;
+    private GridUnitType unitType = GridUnitType.PIXEL;
 
     public PatternDefinition() {
         pattern = "";
@@ -24,7 +25,8 @@ public abstract class PatternDefinition {
     }
 
     /**
-     * Sets the pattern, which takes information about units and values
+     * Sets the pattern, which takes information about units and values. The pattern is parsed once,
+     * so that the grid does not have to look at the string in every layout pass.
      * @param pattern
      */
     public void setPattern(String pattern) {
@@ -32,13 +34,16 @@ public abstract class PatternDefinition {
 
         if (pattern.contains("*")) {
             int end = pattern.indexOf("*");
-            patternValue = Float.parseFloat(pattern.substring(0, end));
+            patternValue = end > 0 ? Float.parseFloat(pattern.substring(0, end)) : 1.0f;
+            unitType = GridUnitType.STAR;
         }
         else if (pattern.equalsIgnoreCase("Auto")) {
             patternValue = 1.0f;
+            unitType = GridUnitType.AUTO;
         }
         else {
             patternValue = Float.parseFloat(pattern);
+            unitType = GridUnitType.PIXEL;
         }
     }
 
@@ -56,4 +61,11 @@ public abstract class PatternDefinition {
         return patternValue;
     }
 
+    /**
+     * @return the unit of the pattern
+     */
+    public GridUnitType getUnitType() {
+        return unitType;
+    }
+
 }
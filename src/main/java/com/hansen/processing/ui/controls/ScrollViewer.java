@@ -2,7 +2,10 @@ package com.hansen.processing.ui.controls;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import com.hansen.processing.ui.adapters.ColorAdapter;
+import com.hansen.processing.ui.rendering.Canvas;
 import com.hansen.processing.ui.singleton.Context;
 import com.hansen.processing.ui.utils.ColorUtils;
 
@@ -12,6 +15,10 @@ import processing.event.MouseEvent;
 /**
  * The ScrollViewer makes it possible to scroll through its children,
  * if the sum of their heights is greater than the elements height.
+ * <p>
+ * If the renderer supports clipping, the children are drawn directly on the canvas of the viewer.
+ * Otherwise they are drawn on an offscreen viewport, which only grows and is never allocated again
+ * for a smaller size.
  * 
  * @author Florian Hansen
  *
@@ -19,11 +26,14 @@ import processing.event.MouseEvent;
 @XmlRootElement(name = "ScrollViewer")
 public class ScrollViewer extends Control {
 
+	private static final int VIEWPORT_GRANULARITY = 64;
+	
 	private PGraphics viewport = null;
+	private Canvas viewportCanvas = null;
 	private float contentHeight = 0;
 	private float scrollBarWidth = 5;
 	private float scrollBarHeight = 0;
-	private String scrollBarColor = "#50333333";
+	private int scrollBarColor = 0x50333333;
 	private float scrollTop = 0;
 	private float scrollStep = 15.0f;
 	
@@ -40,13 +50,15 @@ public class ScrollViewer extends Control {
 	 */
 	public void setScrollBarWidth(float scrollBarWidth) {
 		this.scrollBarWidth = scrollBarWidth;
+		invalidateVisual();
 	}
 
 	/**
 	 * @return the scrollBarColor
 	 */
 	@XmlAttribute(name = "ScrollBarColor")
-	public String getScrollBarColor() {
+	@XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+	public int getScrollBarColor() {
 		return scrollBarColor;
 	}
 
@@ -54,7 +66,15 @@ public class ScrollViewer extends Control {
 	 * @param scrollBarColor the scrollBarColor to set
 	 */
 	public void setScrollBarColor(String scrollBarColor) {
+		setScrollBarColor(ColorUtils.colorFromString(scrollBarColor));
+	}
+	
+	/**
+	 * @param scrollBarColor the scrollBarColor to set as ARGB value
+	 */
+	public void setScrollBarColor(int scrollBarColor) {
 		this.scrollBarColor = scrollBarColor;
+		invalidateVisual();
 	}
 
 	/**
@@ -74,117 +94,194 @@ public class ScrollViewer extends Control {
 
 	public ScrollViewer() {
 		super();
-		
-		createViewport();
 	}
 	
 	@Override
-	protected void drawChildren(PGraphics g) {
-		if (viewport.width > 0 && viewport.height > 0) {
-			// draw children inside the viewport of the scroll viewer
-			viewport.beginDraw();
-			viewport.clear();
+	protected void drawChildren(Canvas canvas) {
+		if (getWidth() <= 0 || getHeight() <= 0) {
+			return;
+		}
+		
+		float absoluteX = getAbsoluteX();
+		float absoluteY = getAbsoluteY();
+		
+		if (canvas.isClippingSupported()) {
+			// draw children directly, but only inside the bounds of the scroll viewer
+			canvas.pushClip(0, 0, getWidth(), getHeight());
+			canvas.pushVisibleArea(absoluteX + padding.getLeft(), absoluteY + padding.getTop(), getWidth(), getHeight());
+			canvas.pushMatrix();
 			
 			// translate the childrens positions based on the scroll value
-			viewport.translate(0, -scrollTop, 0);
+			canvas.translate(0, -scrollTop);
 			
 			for (Control child : children) {
-				child.drawControl(viewport);
+				child.drawControl(canvas);
 			}
 			
-			viewport.endDraw();
-			app.image(viewport, 0,  0);
-			
-			// draw scroll bar on top of the viewer
-			drawScrollBar(g);
+			canvas.popMatrix();
+			canvas.popVisibleArea();
+			canvas.popClip();
+		} else {
+			drawViewport(canvas, absoluteX, absoluteY);
 		}
+		
+		// draw scroll bar on top of the viewer
+		drawScrollBar(canvas);
 	}
 	
 	@Override
-	public void setWidth(float width) {
-		super.setWidth(width);
+	protected void measure() {
+		// children like the VirtualizingStackPanel change their height after they have been added
+		contentHeight = 0;
 		
-		// update view
-		createViewport();
-		recalculateContentHeight();
-		recalculateScrollBar();
+		for (Control child : children) {
+			contentHeight += child.getOffsetHeight();
+		}
 	}
 	
 	@Override
-	public void setHeight(float height) {
-		super.setHeight(height);
+	protected void arrangeChildren() {
+		super.arrangeChildren();
 		
 		// update view
-		createViewport();
-		recalculateContentHeight();
 		recalculateScrollBar();
 	}
 	
 	@Override
-	public void addChild(Control child) {
-		super.addChild(child);
-		
-		// update view
-		recalculateContentHeight();
-		recalculateScrollBar();
+	public void clear() {
+		super.clear();
+		scrollTop = 0;
+		invalidateContentOffset();
 	}
 	
 	@Override
 	protected void mouseWheel(MouseEvent event) {
 		if (isMouseOver) {
+			float previousScrollTop = scrollTop;
 			
+			// coalesced wheel events carry the rotation of several steps
 			if (event.getCount() > 0 && scrollTop < contentHeight - getHeight())
-				scrollTop += Math.min(contentHeight - scrollTop - getHeight(), scrollStep);
+				scrollTop += Math.min(contentHeight - scrollTop - getHeight(), scrollStep * event.getCount());
 			else if (event.getCount() < 0 && scrollTop > 0)
-				scrollTop -= Math.min(scrollTop, scrollStep);
+				scrollTop -= Math.min(scrollTop, scrollStep * -event.getCount());
 			
+			if (scrollTop != previousScrollTop) {
+				invalidateContentOffset();
+				invalidateVisual();
+			}
 		}
 	}
 	
+	@Override
+	protected boolean isClippingChildren() {
+		return true;
+	}
+	
+	@Override
+	protected float getContentOffsetY() {
+		return -scrollTop;
+	}
+	
 	/**
 	 * Draws the scroll bar
 	 * 
-	 * @param g The graphics instance
+	 * @param canvas The canvas to draw on
 	 */
-	private void drawScrollBar(PGraphics g) {
+	private void drawScrollBar(Canvas canvas) {
 		// calculate the position of the scroll bar
 		float x = getWidth() - scrollBarWidth;
 		float y = scrollTop / contentHeight * getHeight();
 		
 		// draw the bar on the right side of the viewer
-		g.pushMatrix();
-		g.fill(ColorUtils.colorFromString(scrollBarColor));
-		g.rect(x, y, scrollBarWidth, scrollBarHeight);
-		g.popMatrix();
+		canvas.pushMatrix();
+		canvas.fill(scrollBarColor);
+		canvas.rect(x, y, scrollBarWidth, scrollBarHeight);
+		canvas.popMatrix();
 	}
 	
 	/**
-	 * Calculates the content height, which is the sum of all child heights.
+	 * Draws the children on the offscreen viewport and the viewport on the canvas.
+	 * Used, if the renderer of the canvas cannot clip.
+	 * 
+	 * @param canvas The canvas to draw on
+	 * @param absoluteX The absolute x position of the viewer
+	 * @param absoluteY The absolute y position of the viewer
 	 */
-	private void recalculateContentHeight() {
-		contentHeight = 0.0f;
+	private void drawViewport(Canvas canvas, float absoluteX, float absoluteY) {
+		int viewportWidth = (int) Math.ceil(getWidth());
+		int viewportHeight = (int) Math.ceil(getHeight());
+		ensureViewport(viewportWidth, viewportHeight);
+		
+		// draw children inside the viewport of the scroll viewer
+		viewport.beginDraw();
+		viewport.clear();
+		viewportCanvas.resetMatrix();
+		
+		// translate the childrens positions based on the scroll value
+		viewportCanvas.translate(0, -scrollTop);
+		
+		// the viewport has been cleared, so every child inside the viewport has to be painted regardless of the repainted area
+		viewportCanvas.resetVisibleArea();
+		viewportCanvas.pushVisibleArea(absoluteX + padding.getLeft(), absoluteY + padding.getTop(), viewportWidth, viewportHeight);
 		
 		for (Control child : children) {
-			contentHeight += child.getOffsetHeight();
+			child.drawControl(viewportCanvas);
 		}
+		
+		viewportCanvas.flush();
+		viewport.endDraw();
+		
+		// the viewport may be larger than the viewer, so only the used region is drawn
+		canvas.image(viewport, 0, 0, viewportWidth, viewportHeight, 0, 0, viewportWidth, viewportHeight);
 	}
 	
 	/**
-	 * Calculates the scroll bar bounds
+	 * Calculates the scroll bar bounds and keeps the scroll value inside the content
 	 */
 	private void recalculateScrollBar() {
 		if (contentHeight > 0 && contentHeight > getHeight()) {
 			float ratio = getHeight() / contentHeight;
 			scrollBarHeight = getHeight() * ratio;
+		} else {
+			scrollBarHeight = 0;
+		}
+		
+		float maximumScrollTop = Math.max(0, contentHeight - getHeight());
+		
+		if (scrollTop > maximumScrollTop) {
+			scrollTop = maximumScrollTop;
+			invalidateContentOffset();
+			invalidateVisual();
 		}
 	}
 	
 	/**
-	 * Creates a new instance of the viewport, which scrolls over the children of this element
+	 * Makes sure, that the viewport is at least as large as the given size. The viewport is only replaced,
+	 * if it is too small, and grows in steps, so that resizing the viewer does not allocate a new one every time.
+	 * 
+	 * @param minimumWidth
+	 * @param minimumHeight
 	 */
-	private void createViewport() {
+	private void ensureViewport(int minimumWidth, int minimumHeight) {
+		if (viewport != null && viewport.width >= minimumWidth && viewport.height >= minimumHeight) {
+			return;
+		}
+		
 		String renderer = Context.getInstance().getRenderer();
-		viewport = app.createGraphics((int) getWidth(), (int) getHeight(), renderer);
+		
+		int viewportWidth = roundUp(Math.max(minimumWidth, viewport != null ? viewport.width : 0));
+		int viewportHeight = roundUp(Math.max(minimumHeight, viewport != null ? viewport.height : 0));
+		
+		viewport = app.createGraphics(viewportWidth, viewportHeight, renderer);
+		viewportCanvas = new Canvas(viewport);
+	}
+	
+	/**
+	 * @param size
+	 * @return the size rounded up to the next multiple of the viewport granularity
+	 */
+	private static int roundUp(int size) {
+		return (size + VIEWPORT_GRANULARITY - 1) / VIEWPORT_GRANULARITY * VIEWPORT_GRANULARITY;
 	}
 	
 }
@@ -1,18 +1,31 @@
 package com.hansen.processing.ui.controls;
 
 import com.hansen.processing.ui.adapters.OrientationAdapter;
-
-import processing.core.PGraphics;
-import processing.core.PVector;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.singleton.LayoutStatistics;
+import com.hansen.processing.ui.singleton.LayoutStatistics.Counter;
+import com.hansen.processing.ui.structures.PrefixSumTree;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A StackPanel stacks children in a specific orientation.
+ * <p>
+ * The bounding sizes of the children along the stack are kept as prefix sums, so a child, which changes its size,
+ * moves the following children in O(log n) without touching them. The children keep their positions and are
+ * offset by the panel while drawing. The child at an offset is found by binary search, see {@link #indexAt(float)}.
+ * <p>
+ * The children are only placed again, if the size of the panel across the stack changes, because their size
+ * along the stack is their own.
  * @author Florian Hansen
  *
  */
@@ -20,7 +33,18 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 @XmlAccessorType(XmlAccessType.NONE)
 public class StackPanel extends Control {
 
+    private static final LayoutStatistics layoutStatistics = LayoutStatistics.getInstance();
+
     private Orientation orientation;
+    private PrefixSumTree childExtents = new PrefixSumTree();
+    private float[] childCrossExtents = new float[16];
+    private Map<Control, Integer> childIndices = new IdentityHashMap<>();
+    private float crossExtent;
+    private boolean crossExtentValid;
+    private List<Control> unplacedChildren = new ArrayList<>();
+    private boolean slotsValid;
+    private float slotWidth;
+    private float slotHeight;
 
     public StackPanel() {
         super();
@@ -28,35 +52,140 @@ public class StackPanel extends Control {
     }
 
     @Override
-    public void drawChildren(PGraphics g) {
-        PVector childPosition = new PVector();
-        for (Control child : children) {
-            child.setPosition(childPosition.copy());
-            child.drawControl(g);
-
-            switch (orientation) {
-                case HORIZONTAL:
-                    childPosition.x += child.getBoundingWidth();
-                    break;
-                case VERTICAL:
-                    childPosition.y += child.getBoundingHeight();
-                    break;
+    protected void drawChildren(Canvas canvas) {
+        ensureChildExtents();
+        float offset = 0.0f;
+
+        for (int i = 0; i < children.size(); i++) {
+            canvas.pushMatrix();
+
+            if (orientation == Orientation.HORIZONTAL) {
+                canvas.translate(offset, 0);
+            } else {
+                canvas.translate(0, offset);
             }
+
+            children.get(i).drawControl(canvas);
+            canvas.popMatrix();
+            offset += childExtents.get(i);
         }
     }
 
     @Override
     public void addChild(Control child) {
         super.addChild(child);
-        recalculateSize();
 
-        child.addResizeListener((width, height) -> {
-            if (!isStretchHorizontal() && !isFit()) {
-                setResizeListenersLocked(true);
-                recalculateSize();
-                setResizeListenersLocked(false);
+        // the new child is placed after all others, so no other child moves
+        if (childExtents.size() == children.size() - 1) {
+            appendChildExtent(child);
+        } else {
+            childExtents.clear();
+        }
+
+        unplacedChildren.add(child);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        childExtents.clear();
+        childIndices.clear();
+        unplacedChildren.clear();
+        crossExtent = 0.0f;
+        crossExtentValid = true;
+    }
+
+    @Override
+    protected void measure() {
+        ensureChildExtents();
+
+        // the size of a fitting panel is given by its parent
+        if (!isFit()) {
+            recalculateSize();
+        }
+    }
+
+    @Override
+    protected void arrangeChildren() {
+        float width = getOffsetWidth();
+        float height = getOffsetHeight();
+        boolean crossChanged = orientation == Orientation.HORIZONTAL ? height != slotHeight : width != slotWidth;
+
+        if (!slotsValid || crossChanged) {
+            slotsValid = true;
+            slotWidth = width;
+            slotHeight = height;
+            super.arrangeChildren();
+        } else {
+            // only new children and children, whose placement has changed, need their slot
+            for (Control child : unplacedChildren) {
+                if (child.getParent() == this) {
+                    child.onControlResize(width, height);
+                }
+            }
+        }
+
+        unplacedChildren.clear();
+    }
+
+    @Override
+    protected void onChildSizeChanged(Control child) {
+        Integer index = childIndices.get(child);
+
+        if (index != null && index < childExtents.size() && children.get(index) == child) {
+            float extent = getExtent(child);
+
+            if (extent != childExtents.get(index)) {
+                childExtents.set(index, extent);
+
+                // the following children move, but their areas are covered by the area of the panel
+                if (index < childExtents.size() - 1) {
+                    invalidateAbsolutePositions();
+                    invalidateVisual();
+                }
             }
-        });
+
+            updateCrossExtent(index, getCrossExtent(child));
+        } else {
+            childExtents.clear();
+        }
+
+        invalidateMeasure();
+    }
+
+    @Override
+    protected void onChildPlacementChanged(Control child) {
+        unplacedChildren.add(child);
+        invalidateArrange();
+    }
+
+    @Override
+    protected float getChildOffsetX(Control child) {
+        return orientation == Orientation.HORIZONTAL ? getChildOffset(child) : 0;
+    }
+
+    @Override
+    protected float getChildOffsetY(Control child) {
+        return orientation == Orientation.VERTICAL ? getChildOffset(child) : 0;
+    }
+
+    /**
+     * @param index
+     * @return the offset of the child at the index along the stack, relative to the content of the panel
+     */
+    public float getChildOffset(int index) {
+        ensureChildExtents();
+        return childExtents.sum(index);
+    }
+
+    /**
+     * Searches the child covering an offset along the stack, e.g. for hit testing or to scroll a child into view
+     * @param offset relative to the content of the panel
+     * @return the index of the child or -1, if no child covers the offset
+     */
+    public int indexAt(float offset) {
+        ensureChildExtents();
+        return childExtents.indexOf(offset);
     }
 
     /**
@@ -74,41 +203,118 @@ public class StackPanel extends Control {
      */
     public void setOrientation(Orientation orientation) {
         this.orientation = orientation;
-        recalculateSize();
+
+        // the extents are measured along the other axis now
+        childExtents.clear();
+        slotsValid = false;
+        invalidateAbsolutePositions();
+        invalidateMeasure();
+        invalidateVisual();
     }
 
     /**
-     * Recalculates the size of the stack panel by looking at each child size depending on the orientation
+     * @param child
+     * @return the offset of the child along the stack or 0, if it is not a child of this panel
+     */
+    private float getChildOffset(Control child) {
+        ensureChildExtents();
+        Integer index = childIndices.get(child);
+        return index != null ? childExtents.sum(index) : 0;
+    }
+
+    /**
+     * Recalculates the size of the stack panel from the sum of the child extents along the stack and the largest child across it
      */
     private void recalculateSize() {
-        float width = 0.0f;
-        float height = 0.0f;
+        layoutStatistics.count(this, Counter.STACK_PANEL_RECALCULATION);
 
-        switch (orientation) {
-            case HORIZONTAL:
-                for (Control child : children) {
-                    width += child.getOffsetWidth();
+        if (!crossExtentValid) {
+            crossExtent = 0.0f;
 
-                    if (child.getBoundingHeight() > height) {
-                        height = child.getOffsetHeight();
-                    }
-                }
-                break;
-            case VERTICAL:
-                for (Control child : children) {
-                    height += child.getOffsetHeight();
-
-                    if (child.getOffsetWidth() > width) {
-                        width = child.getOffsetWidth();
-                    }
-                }
-                break;
+            for (int i = 0; i < children.size(); i++) {
+                crossExtent = Math.max(crossExtent, childCrossExtents[i]);
+            }
+
+            crossExtentValid = true;
         }
 
+        float width = orientation == Orientation.HORIZONTAL ? childExtents.total() : crossExtent;
+        float height = orientation == Orientation.HORIZONTAL ? crossExtent : childExtents.total();
+
         if (isStretchHorizontal()) {
-            width = getOffsetWidth();
+            width = getWidth();
         }
 
         setSize(width, height);
     }
+
+    /**
+     * Rebuilds the extents of all children, if children have been replaced without being added to this panel
+     */
+    private void ensureChildExtents() {
+        if (childExtents.size() == children.size()) {
+            return;
+        }
+
+        childExtents.clear();
+        childIndices.clear();
+        crossExtent = 0.0f;
+        crossExtentValid = true;
+
+        for (Control child : children) {
+            appendChildExtent(child);
+        }
+
+        invalidateAbsolutePositions();
+    }
+
+    /**
+     * Appends the extents of a child, which has been added after all others
+     * @param child
+     */
+    private void appendChildExtent(Control child) {
+        int index = childExtents.size();
+
+        if (index == childCrossExtents.length) {
+            childCrossExtents = Arrays.copyOf(childCrossExtents, index * 2);
+        }
+
+        childIndices.put(child, index);
+        childExtents.add(getExtent(child));
+        childCrossExtents[index] = getCrossExtent(child);
+        crossExtent = Math.max(crossExtent, childCrossExtents[index]);
+    }
+
+    /**
+     * Replaces the extent of a child across the stack. The largest extent is only searched again, if the largest child has shrunk.
+     * @param index
+     * @param extent
+     */
+    private void updateCrossExtent(int index, float extent) {
+        float previousExtent = childCrossExtents[index];
+        childCrossExtents[index] = extent;
+
+        if (extent >= crossExtent) {
+            crossExtent = extent;
+        } else if (previousExtent >= crossExtent) {
+            crossExtentValid = false;
+        }
+    }
+
+    /**
+     * @param child
+     * @return the bounding size of the child along the stack
+     */
+    private float getExtent(Control child) {
+        float extent = orientation == Orientation.HORIZONTAL ? child.getBoundingWidth() : child.getBoundingHeight();
+        return Math.max(0.0f, extent);
+    }
+
+    /**
+     * @param child
+     * @return the bounding size of the child across the stack
+     */
+    private float getCrossExtent(Control child) {
+        return orientation == Orientation.HORIZONTAL ? child.getBoundingHeight() : child.getBoundingWidth();
+    }
 }
@@ -1,8 +1,6 @@
 package com.hansen.processing.ui.controls;
 
-import com.hansen.processing.ui.utils.ColorUtils;
-
-import processing.core.PGraphics;
+import com.hansen.processing.ui.rendering.Canvas;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -18,12 +16,12 @@ import javax.xml.bind.annotation.XmlRootElement;
 public class TextBlock extends TextControl {
 
     @Override
-    protected void draw(PGraphics g) {
+    protected void draw(Canvas canvas) {
         if (getText() != null) {
-            g.fill(ColorUtils.colorFromString(getFontColor()));
-            g.textSize(getFontSize());
-            g.textAlign(LEFT, TOP);
-            g.text(getText(), 0, 0, width, height);
+            canvas.fill(getFontColor());
+            canvas.textSize(getFontSize());
+            canvas.textAlign(LEFT, TOP);
+            canvas.text(getText(), 0, 0, width, height);
         }
     }
 }
@@ -1,12 +1,13 @@
 package com.hansen.processing.ui.controls;
 
 import com.hansen.processing.ui.adapters.TextBoxTypeAdapter;
-import com.hansen.processing.ui.utils.ColorUtils;
+import com.hansen.processing.ui.events.DragEventArgs;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.rendering.FrameScheduler;
+import com.hansen.processing.ui.singleton.Context;
 
 import processing.core.PGraphics;
-import processing.core.PVector;
 import processing.event.KeyEvent;
-import processing.event.MouseEvent;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -24,10 +25,12 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 public class TextBox extends GradientTextControl {
 
 	private TextBoxType type = TextBoxType.TEXT;
-    private boolean isSelected;
     private boolean showCursor;
-    private boolean cursorAnimationRunning;
+    private FrameScheduler.Timer cursorTimer;
     private int animationDelay;
+    private float cursorX;
+    private float cursorY;
+    private float cursorHeight = 15.0f;
     private int cursorOffset;
     private String selectedText = "";
     private int selectedTextEnd;
@@ -56,50 +59,61 @@ public class TextBox extends GradientTextControl {
     }
 
     @Override
-    protected void draw(PGraphics g) {
-        String text = getText();
-        float textOffsetWidth = g.textWidth(text.substring(0, text.length() - cursorOffset));
-        float textWidth = g.textWidth(getText());
-        float selectedTextWidth = g.textWidth(selectedText);
+    protected void draw(Canvas canvas) {
+        super.draw(canvas);
+
+        PGraphics g = canvas.getGraphics();
+        int length = getText().length();
+        float textOffsetWidth = getTextWidth(g, length - cursorOffset);
+        float textWidth = getTextWidth(g, length);
+        float selectedTextWidth = Math.abs(getTextWidth(g, Math.min(selectedTextEnd, length))
+                - getTextWidth(g, Math.min(selectedTextStart, length)));
         float offset = textWidth - textOffsetWidth;
-        float cursorHeight = 15.0f;
-
-        super.draw(g);
+        float x = 0;
+        float y = 0;
 
         switch (getTextAlignment()) {
             case LEFT:
-                g.translate(width + 3 - offset, height / 2 - cursorHeight / 2);
+                x = width + 3 - offset;
+                y = height / 2 - cursorHeight / 2;
                 break;
 
             case RIGHT:
-                g.translate(width - offset, height / 2 - cursorHeight / 2);
+                x = width - offset;
+                y = height / 2 - cursorHeight / 2;
                 break;
 
             case CENTER:
-                g.translate(width / 2 + textWidth / 2 - offset, height / 2 - cursorHeight / 2);
+                x = width / 2 + textWidth / 2 - offset;
+                y = height / 2 - cursorHeight / 2;
                 break;
 			default:
 				break;
         }
 
-        g.fill(0x40000000);
+        // remember the position of the cursor, so that blinking only repaints the cursor itself
+        cursorX = getPadding().getLeft() + x;
+        cursorY = getPadding().getTop() + y;
+        canvas.translate(x, y);
+
+        canvas.fill(0x40000000);
 
         if (selectedTextStart < selectedTextEnd) {
-            g.rect(0, 0, selectedTextWidth, cursorHeight);
+            canvas.rect(0, 0, selectedTextWidth, cursorHeight);
         } else {
-            g.rect(-selectedTextWidth, 0, selectedTextWidth, cursorHeight);
+            canvas.rect(-selectedTextWidth, 0, selectedTextWidth, cursorHeight);
         }
 
         if (showCursor) {
-            g.noStroke();
+            canvas.noStroke();
 
-            g.fill(ColorUtils.colorFromString(getFontColor()));
-            g.rect(0, 0, 2, cursorHeight);
+            canvas.fill(getFontColor());
+            canvas.rect(0, 0, 2, cursorHeight);
         }
     }
     
     @Override
-    protected void drag(PVector dragDirection, boolean precise) {
+    protected void drag(DragEventArgs args) {
     	if (type == TextBoxType.NUMBER) {
     		float value = 0.0f;
     		
@@ -107,10 +121,11 @@ public class TextBox extends GradientTextControl {
         		value = Float.parseFloat(getText());
     		}
     		
-    		if (!precise) {
-    			value += dragDirection.x;    			
+    		// the value changes with the distance of the movement
+    		if (!args.isPrecise()) {
+    			value += args.getDeltaX();
     		} else {
-    			value += dragDirection.x * 0.01f;
+    			value += args.getDeltaX() * 0.01f;
     		}
     		
     		setText(String.valueOf(value));
@@ -128,23 +143,22 @@ public class TextBox extends GradientTextControl {
     }
 
     @Override
-    protected void click(MouseEvent event) {
-    	// clear selection from previous TextBoxes to avoid multiple selection behavior
-    	deselectTextBoxes();
-    	
-    	// mark this TextBox as selected
-        isSelected = true;
-
-        // start cursor animation
-        if (!cursorAnimationRunning) {
-            startCursorStateAnimation();
-        }
+    protected boolean isFocusable() {
+        return true;
     }
 
     @Override
-    protected void clickBeside(MouseEvent event) {
-        isSelected = false;
+    protected void focusEnter() {
+        // the focus manager keeps a single element focused, so no other TextBox has to be deselected
+        showCursor = true;
+
+        if (cursorTimer == null || !cursorTimer.isActive()) {
+            cursorTimer = Context.getInstance().getScheduler().scheduleRepeating(animationDelay, this::toggleCursor);
+        }
+    }
 
+    @Override
+    protected void focusLeave() {
         selectedTextStart = 0;
         selectedTextEnd = 0;
         selectedText = "";
@@ -152,7 +166,7 @@ public class TextBox extends GradientTextControl {
 
     @Override
     protected void keyPressed(KeyEvent event) {
-        if (isSelected) {
+        if (isFocused) {
             switch (event.getKeyCode()) {
                 case BACKSPACE:
                     if (getText().length() > 0) {
@@ -219,7 +233,7 @@ public class TextBox extends GradientTextControl {
                     break;
 
                 case ENTER:
-                    isSelected = false;
+                    getFocusManager().setFocusedControl(null);
                     break;
 
                 case UP:
@@ -241,40 +255,37 @@ public class TextBox extends GradientTextControl {
                     setText(front + event.getKey() + back);
                     break;
             }
+            
+            // the cursor or the selection might have moved
+            invalidateVisual();
         }
     }
 
-    /**
-     * Starts a thread to let the cursor blink
-     */
-    private void startCursorStateAnimation() {
-        new Thread(() -> {
-            cursorAnimationRunning = true;
-
-            while(isSelected) {
-                showCursor = true;
+    @Override
+    public void dispose() {
+        if (cursorTimer != null) {
+            cursorTimer.cancel();
+        }
 
-                try {
-                    Thread.sleep(animationDelay);
-                } catch(Exception ignore) { }
+        super.dispose();
+    }
 
-                showCursor = false;
+    /**
+     * Lets the cursor blink. Called by the scheduler, until the TextBox loses the focus.
+     */
+    private void toggleCursor() {
+        if (isFocused) {
+            showCursor = !showCursor;
+        } else {
+            cursorTimer.cancel();
 
-                try {
-                    Thread.sleep(animationDelay);
-                } catch(Exception ignore) { }
+            if (!showCursor) {
+                return;
             }
 
-            cursorAnimationRunning = false;
-        }).start();
-    }
-    
-    /**
-     * Deselects all TextBoxes to avoid multiple select
-     */
-    private void deselectTextBoxes() {
-    	for (TextBox textBox : Control.getControls(TextBox.class)) {
-    		textBox.isSelected = false;
-    	}
+            showCursor = false;
+        }
+
+        invalidateVisual(cursorX, cursorY, 2, cursorHeight);
     }
 }
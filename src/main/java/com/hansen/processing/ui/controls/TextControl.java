@@ -2,10 +2,14 @@ package com.hansen.processing.ui.controls;
 
 import com.hansen.processing.ui.adapters.AlignmentAdapter;
 import com.hansen.processing.ui.adapters.BooleanAdapter;
+import com.hansen.processing.ui.adapters.ColorAdapter;
 import com.hansen.processing.ui.adapters.TextAdapter;
 import com.hansen.processing.ui.listener.TextChangedListener;
+import com.hansen.processing.ui.rendering.Canvas;
+import com.hansen.processing.ui.rendering.GlyphMetrics;
 import com.hansen.processing.ui.utils.ColorUtils;
 
+import processing.core.PFont;
 import processing.core.PGraphics;
 
 import javax.xml.bind.annotation.XmlAttribute;
@@ -23,9 +27,12 @@ public abstract class TextControl extends Control {
     private Alignment textAlignment;
     private float fontSize;
     private String text;
-    private String fontColor;
+    private int fontColor = ColorUtils.TRANSPARENT;
     private boolean fitText;
     private List<TextChangedListener> textChangedListeners = new ArrayList<>();
+    private float[] textWidths;
+    private PFont textWidthsFont;
+    private boolean textWidthsValid;
 
     public TextControl() {
         super();
@@ -37,26 +44,26 @@ public abstract class TextControl extends Control {
     }
 
     @Override
-    protected void draw(PGraphics g) {
+    protected void draw(Canvas canvas) {
         if (getText() != null) {
-            g.fill(ColorUtils.colorFromString(getFontColor()));
-            g.textSize(fontSize);
+            canvas.fill(fontColor);
+            canvas.textSize(fontSize);
             
-            int textWidth = (int) g.textWidth(getText());
+            int textWidth = (int) getTextWidth(canvas.getGraphics(), getText().length());
 
             switch (textAlignment) {
                 case RIGHT:
-                    g.textAlign(LEFT, CENTER);
-                    g.text(getText(), getWidth() - textWidth, getHeight() / 2 - 1);
+                    canvas.textAlign(LEFT, CENTER);
+                    canvas.text(getText(), getWidth() - textWidth, getHeight() / 2 - 1);
                     break;
                 case CENTER:
-                    g.textAlign(LEFT, CENTER);
-                    g.text(getText(), getWidth() / 2 - textWidth / 2, getHeight() / 2 - 1);
+                    canvas.textAlign(LEFT, CENTER);
+                    canvas.text(getText(), getWidth() / 2 - textWidth / 2, getHeight() / 2 - 1);
                     break;
                default:
                case LEFT:
-                   g.textAlign(LEFT, CENTER);
-                   g.text(getText(), 0.0f, getHeight() / 2 - 1);
+                   canvas.textAlign(LEFT, CENTER);
+                   canvas.text(getText(), 0.0f, getHeight() / 2 - 1);
                    break;
             }
         }
@@ -64,26 +71,33 @@ public abstract class TextControl extends Control {
 
     @Override
     public void setWidth(float width) {
+        // the size given by the text wins over the size given by the parent, so that the layout settles
+        if (isFitText() && getText() != null) {
+            width = getTextWidth(app.g, getText().length());
+        }
+
         super.setWidth(width);
-        update();
     }
 
     @Override
     public void setHeight(float height) {
+        if (isFitText() || isStretchHorizontal()) {
+            height = fontSize + padding.getTop() + padding.getBottom();
+        }
+
         super.setHeight(height);
-        update();
     }
 
     @Override
     public void setStretchHorizontal(Boolean stretchHorizontal) {
         super.setStretchHorizontal(stretchHorizontal);
-        update();
+        invalidateMeasure();
     }
 
     @Override
     public void setPadding(Thickness padding) {
         super.setPadding(padding);
-        update();
+        invalidateMeasure();
     }
 
     /**
@@ -116,7 +130,8 @@ public abstract class TextControl extends Control {
      * @return the color of the font
      */
     @XmlAttribute(name = "FontColor")
-    public String getFontColor() {
+    @XmlJavaTypeAdapter(value = ColorAdapter.class, type = int.class)
+    public int getFontColor() {
         return fontColor;
     }
 
@@ -135,6 +150,7 @@ public abstract class TextControl extends Control {
      */
     public void setTextAlignment(Alignment textAlignment) {
         this.textAlignment = textAlignment;
+        invalidateVisual();
     }
 
     /**
@@ -143,7 +159,9 @@ public abstract class TextControl extends Control {
      */
     public void setFontSize(float fontSize) {
         this.fontSize = fontSize;
-        update();
+        textWidthsValid = false;
+        invalidateMeasure();
+        invalidateVisual();
     }
 
     /**
@@ -159,7 +177,12 @@ public abstract class TextControl extends Control {
             this.text = text;
         }
 
-        update();
+        if (!this.text.equals(oldText)) {
+            textWidthsValid = false;
+            invalidateVisual();
+            invalidateMeasure();
+        }
+
         invokeTextChangedListeners(oldText, this.text);
         notifyPropertyChanged("text");
     }
@@ -169,7 +192,16 @@ public abstract class TextControl extends Control {
      * @param fontColor
      */
     public void setFontColor(String fontColor) {
+        setFontColor(ColorUtils.colorFromString(fontColor));
+    }
+
+    /**
+     * Sets the font color as ARGB value
+     * @param fontColor
+     */
+    public void setFontColor(int fontColor) {
         this.fontColor = fontColor;
+        invalidateVisual();
     }
 
     /**
@@ -178,7 +210,7 @@ public abstract class TextControl extends Control {
      */
     public void setFitText(Boolean fitText) {
         this.fitText = fitText;
-        update();
+        invalidateMeasure();
     }
 
     /**
@@ -201,16 +233,31 @@ public abstract class TextControl extends Control {
     }
 
     /**
-     * Updates the element
+     * Returns the width of the first characters of the text. The widths of all prefixes are cached
+     * until the text, the font size or the font of the graphics changes.
+     * @param g graphics to measure with, its text size is set to the font size of this element if needed
+     * @param length number of characters
+     * @return the width of the first {@code length} characters
      */
-    protected void update() {
-        if (isFitText() && getText() != null) {
-            app.textSize(fontSize);
-            super.setWidth(app.textWidth(getText()));
-        }
+    protected float getTextWidth(PGraphics g, int length) {
+        if (!textWidthsValid || g.textFont != textWidthsFont) {
+            g.textSize(fontSize);
 
-        if (isFitText() || isStretchHorizontal()) {
-            super.setHeight(fontSize + padding.getTop() + padding.getBottom());
+            GlyphMetrics metrics = GlyphMetrics.getInstance(g.textFont, fontSize);
+            textWidths = metrics.getPrefixWidths(g, text, textWidths);
+            textWidthsFont = g.textFont;
+            textWidthsValid = true;
         }
+
+        return textWidths[length];
+    }
+
+    /**
+     * Fits the size of the element to the text, if it is required
+     */
+    @Override
+    protected void measure() {
+        setWidth(getWidth());
+        setHeight(getHeight());
     }
 }
\ No newline at end of file
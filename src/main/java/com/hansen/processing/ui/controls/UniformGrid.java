@@ -0,0 +1,86 @@
+package com.hansen.processing.ui.controls;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A UniformGrid divides its area into rows and columns of the same size and places one child in each cell,
+ * line by line from left to right. If the number of rows or columns is not set, it is calculated from the
+ * number of children, so that all children fit into the grid.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <pre>{@code
+ * <UniformGrid Width="400" Height="300" Columns="4">
+ *     <Button Fit="true" Text="1" />
+ *     <Button Fit="true" Text="2" />
+ * </UniformGrid>
+ * }</pre>
+ * @author Florian Hansen
+ *
+ */
+@XmlRootElement(name = "UniformGrid")
+@XmlAccessorType(XmlAccessType.NONE)
+public class UniformGrid extends UniformPanel {
+
+    private int rows;
+    private int columns;
+
+    public UniformGrid() {
+        super();
+    }
+
+    @Override
+    protected void measureCells() {
+        int count = Math.max(1, children.size());
+        int columns = this.columns;
+        int rows = this.rows;
+
+        if (columns <= 0) {
+            columns = rows > 0 ? (count + rows - 1) / rows : (int) Math.ceil(Math.sqrt(count));
+        }
+
+        if (rows <= 0) {
+            rows = (count + columns - 1) / columns;
+        }
+
+        setCells(columns, getWidth() / columns, getHeight() / rows);
+    }
+
+    /**
+     * @return the number of rows or 0, if it is calculated from the number of children
+     */
+    @XmlAttribute(name = "Rows")
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Sets the number of rows. If it is 0, it is calculated from the number of children.
+     * @param rows
+     */
+    public void setRows(int rows) {
+        this.rows = rows;
+        invalidateMeasure();
+    }
+
+    /**
+     * @return the number of columns or 0, if it is calculated from the number of children
+     */
+    @XmlAttribute(name = "Columns")
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the number of columns. If it is 0, it is calculated from the number of children.
+     * @param columns
+     */
+    public void setColumns(int columns) {
+        this.columns = columns;
+        invalidateMeasure();
+    }
+
+}
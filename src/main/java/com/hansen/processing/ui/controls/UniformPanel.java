@@ -0,0 +1,278 @@
+package com.hansen.processing.ui.controls;
+
+import com.hansen.processing.ui.rendering.Canvas;
+
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of panels, which place their children in cells of the same size, line by line from left to right.
+ * The cell of a child is calculated from its index, so placing, culling and hit testing cost the same for every child,
+ * regardless of the number of children. Only the children inside the visible area are drawn.
+ * <p>
+ * The children are clipped to the bounds of the panel and are expected to stay inside their cells.
+ * @author Florian Hansen
+ *
+ */
+public abstract class UniformPanel extends Control {
+
+    private int columns = 1;
+    private float cellWidth;
+    private float cellHeight;
+    private Map<Control, Integer> childIndices = new IdentityHashMap<>();
+    private List<Control> unplacedChildren = new ArrayList<>();
+    private boolean slotsValid;
+
+    public UniformPanel() {
+        super();
+    }
+
+    /**
+     * Calculates the cells from the size of the panel and the number of children by calling {@link #setCells(int, float, float)}.
+     * Called by the layout pass, before the children are placed.
+     */
+    protected abstract void measureCells();
+
+    @Override
+    public void setWidth(float width) {
+        // the cells are calculated from the size of the panel
+        if (width != getWidth()) {
+            super.setWidth(width);
+            invalidateMeasure();
+        }
+    }
+
+    @Override
+    public void setHeight(float height) {
+        if (height != getHeight()) {
+            super.setHeight(height);
+            invalidateMeasure();
+        }
+    }
+
+    @Override
+    protected void measure() {
+        ensureChildIndices();
+        measureCells();
+    }
+
+    @Override
+    protected void arrangeChildren() {
+        if (!slotsValid) {
+            slotsValid = true;
+
+            for (Control child : children) {
+                child.onControlResize(cellWidth, cellHeight);
+            }
+        } else {
+            // the cells have not changed, so only new children and children, whose placement has changed, need their slot
+            for (Control child : unplacedChildren) {
+                if (child.getParent() == this) {
+                    child.onControlResize(cellWidth, cellHeight);
+                }
+            }
+        }
+
+        unplacedChildren.clear();
+    }
+
+    @Override
+    protected void drawChildren(Canvas canvas) {
+        if (children.isEmpty() || cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+
+        float contentLeft = getAbsoluteX() + padding.getLeft();
+        float contentTop = getAbsoluteY() + padding.getTop();
+        int rows = getRowCount();
+
+        // only the cells inside the visible area are drawn
+        int firstColumn = Math.max(0, (int) Math.floor((canvas.getVisibleLeft() - contentLeft) / cellWidth));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor((canvas.getVisibleRight() - contentLeft) / cellWidth));
+        int firstRow = Math.max(0, (int) Math.floor((canvas.getVisibleTop() - contentTop) / cellHeight));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((canvas.getVisibleBottom() - contentTop) / cellHeight));
+
+        boolean clipping = canvas.isClippingSupported();
+
+        if (clipping) {
+            canvas.pushClip(0, 0, getWidth(), getHeight());
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * columns + column;
+
+                if (index >= children.size()) {
+                    break;
+                }
+
+                canvas.pushMatrix();
+                canvas.translate(column * cellWidth, row * cellHeight);
+                children.get(index).drawControl(canvas);
+                canvas.popMatrix();
+            }
+        }
+
+        if (clipping) {
+            canvas.popClip();
+        }
+    }
+
+    @Override
+    public void addChild(Control child) {
+        super.addChild(child);
+
+        if (childIndices.size() == children.size() - 1) {
+            childIndices.put(child, children.size() - 1);
+        }
+
+        unplacedChildren.add(child);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        childIndices.clear();
+        unplacedChildren.clear();
+    }
+
+    @Override
+    protected void onChildSizeChanged(Control child) {
+        // the cells do not depend on the size of the children
+    }
+
+    @Override
+    protected void onChildPlacementChanged(Control child) {
+        unplacedChildren.add(child);
+        invalidateArrange();
+    }
+
+    @Override
+    protected float getChildOffsetX(Control child) {
+        Integer index = getChildIndex(child);
+        return index != null ? index % columns * cellWidth : 0;
+    }
+
+    @Override
+    protected float getChildOffsetY(Control child) {
+        Integer index = getChildIndex(child);
+        return index != null ? index / columns * cellHeight : 0;
+    }
+
+    @Override
+    protected boolean isClippingChildren() {
+        return true;
+    }
+
+    /**
+     * Searches the child, whose cell covers a point, e.g. for hit testing
+     * @param x relative to the content of the panel
+     * @param y relative to the content of the panel
+     * @return the index of the child or -1, if no child covers the point
+     */
+    public int indexAt(float x, float y) {
+        if (x < 0 || y < 0 || cellWidth <= 0 || cellHeight <= 0) {
+            return -1;
+        }
+
+        int column = (int) (x / cellWidth);
+        int index = (int) (y / cellHeight) * columns + column;
+        return column < columns && index < children.size() ? index : -1;
+    }
+
+    /**
+     * @return the number of cells in each line
+     */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * @return the number of lines, which are needed for all children
+     */
+    public int getRowCount() {
+        return (children.size() + columns - 1) / columns;
+    }
+
+    /**
+     * @return the width of each cell
+     */
+    public float getCellWidth() {
+        return cellWidth;
+    }
+
+    /**
+     * @return the height of each cell
+     */
+    public float getCellHeight() {
+        return cellHeight;
+    }
+
+    /**
+     * Sets the cells, in which the children are placed. The children are only placed again, if the cells have changed.
+     * @param columns the number of cells in each line
+     * @param cellWidth
+     * @param cellHeight
+     */
+    protected void setCells(int columns, float cellWidth, float cellHeight) {
+        columns = Math.max(1, columns);
+
+        if (columns != this.columns || cellWidth != this.cellWidth || cellHeight != this.cellHeight) {
+            this.columns = columns;
+            this.cellWidth = cellWidth;
+            this.cellHeight = cellHeight;
+            slotsValid = false;
+            invalidateAbsolutePositions();
+            invalidateVisual();
+        }
+    }
+
+    /**
+     * @param child
+     * @return the index of the child or null, if it is not a child of this panel
+     */
+    private Integer getChildIndex(Control child) {
+        Integer index = childIndices.get(child);
+
+        // the children may have been replaced, removed or reordered without this panel being informed
+        if ((index == null || index >= children.size() || children.get(index) != child) && child.getParent() == this) {
+            rebuildChildIndices();
+            index = childIndices.get(child);
+        }
+
+        return index;
+    }
+
+    /**
+     * Rebuilds the indices of all children, if children have been replaced, removed or reordered without this panel being informed
+     */
+    private void ensureChildIndices() {
+        boolean valid = childIndices.size() == children.size();
+
+        for (int i = 0; valid && i < children.size(); i++) {
+            Integer index = childIndices.get(children.get(i));
+            valid = index != null && index == i;
+        }
+
+        if (!valid) {
+            rebuildChildIndices();
+        }
+    }
+
+    /**
+     * Records the index of every child and moves the children to their cells
+     */
+    private void rebuildChildIndices() {
+        childIndices.clear();
+
+        for (int i = 0; i < children.size(); i++) {
+            childIndices.put(children.get(i), i);
+        }
+
+        invalidateAbsolutePositions();
+    }
+
+}
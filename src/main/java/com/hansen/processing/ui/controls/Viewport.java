@@ -31,11 +31,19 @@ public abstract class Viewport implements PConstants {
      * Renders the viewport
      */
     public void drawViewport() {
+        drawViewport(app.g);
+    }
+
+    /**
+     * Renders the viewport and draws it on the target graphics
+     * @param target
+     */
+    public void drawViewport(PGraphics target) {
         if (graphics.width > 0 && graphics.height > 0) {
             graphics.beginDraw();
             draw();
             graphics.endDraw();
-            app.image(graphics, 0, 0);
+            target.image(graphics, 0, 0);
         }
     }
 
@@ -1,9 +1,9 @@
 package com.hansen.processing.ui.controls;
 
 import com.hansen.processing.ui.adapters.ViewportAdapter;
+import com.hansen.processing.ui.events.DragEventArgs;
+import com.hansen.processing.ui.rendering.Canvas;
 
-import processing.core.PGraphics;
-import processing.core.PVector;
 import processing.event.KeyEvent;
 import processing.event.MouseEvent;
 
@@ -61,7 +61,7 @@ public class ViewportContainer extends Control {
     }
 
     @Override
-    protected void draw(PGraphics g) {
+    protected void draw(Canvas canvas) {
         // updating the viewport
         if (isRunning()) {
             viewport.update();
@@ -69,7 +69,12 @@ public class ViewportContainer extends Control {
 
         // rendering the viewport
         if (viewport != null) {
-            viewport.drawViewport();
+            viewport.drawViewport(canvas.drawDirectly());
+        }
+        
+        // a running viewport changes every frame, so it has to be repainted in the next one
+        if (isRunning()) {
+        	invalidateVisual();
         }
     }
 
@@ -97,6 +102,12 @@ public class ViewportContainer extends Control {
         viewport.resize(getWidth(), getHeight());
     }
     
+    @Override
+    protected boolean isFocusable() {
+        // the viewport receives the key events, after it has been clicked
+        return true;
+    }
+    
     @Override
     protected void keyPressed(KeyEvent event) {
     	viewport.keyPressed(event);
@@ -108,7 +119,7 @@ public class ViewportContainer extends Control {
     }
     
     @Override
-    protected void drag(PVector dragDirection, boolean precise) {
+    protected void drag(DragEventArgs args) {
     	viewport.mouseDragged();
     }
     
@@ -0,0 +1,312 @@
+package com.hansen.processing.ui.controls;
+
+import com.hansen.processing.ui.events.NotifyPropertyChanged;
+import com.hansen.processing.ui.utils.ControlUtils;
+
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A VirtualizingStackPanel stacks one row for each item of its item source vertically. In contrast to the StackPanel
+ * only the rows inside (and just around) the visible area are created. Rows, which are scrolled out of view, are
+ * recycled for other items. Each row is created from the item template and bound to its item. The rows are realized
+ * in the layout pass, which runs again, whenever a clipping parent scrolls.
+ * <p>
+ * All rows have the same height, so the height of the panel is known without creating any row.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <pre>{@code
+ * <ScrollViewer Width="300" Height="400">
+ *     <VirtualizingStackPanel Width="300" ItemHeight="24" ItemTemplate="/Row.xml" Bind="{Path=rows, Property=items}" />
+ * </ScrollViewer>
+ * }</pre>
+ * @author Florian Hansen
+ *
+ */
+@XmlRootElement(name = "VirtualizingStackPanel")
+@XmlAccessorType(XmlAccessType.NONE)
+public class VirtualizingStackPanel extends Control {
+
+    private List<?> items = Collections.emptyList();
+    private String itemTemplate;
+    private float itemHeight = 20;
+    private int overscan = 3;
+
+    // visible range relative to the content of this element, updated before the rows are realized
+    private float visibleTop;
+    private float visibleBottom;
+    private Map<Integer, Control> realizedItems = new HashMap<>();
+    private Deque<Control> recycledItems = new ArrayDeque<>();
+
+    public VirtualizingStackPanel() {
+        super();
+    }
+
+    /**
+     * @return the items, which are shown as rows
+     */
+    public List<?> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the resource name of the XML template, which is used to create the rows
+     */
+    @XmlAttribute(name = "ItemTemplate")
+    public String getItemTemplate() {
+        return itemTemplate;
+    }
+
+    /**
+     * @return the height of each row
+     */
+    @XmlAttribute(name = "ItemHeight")
+    public float getItemHeight() {
+        return itemHeight;
+    }
+
+    /**
+     * @return the number of rows, which are created above and below the visible area
+     */
+    @XmlAttribute(name = "Overscan")
+    public int getOverscan() {
+        return overscan;
+    }
+
+    /**
+     * Sets the items, which are shown as rows
+     * @param items
+     */
+    public void setItems(List<?> items) {
+        this.items = items != null ? items : Collections.emptyList();
+        refresh();
+    }
+
+    /**
+     * Sets the resource name of the XML template, which is used to create the rows. Without a template,
+     * each row is a Label showing the string representation of its item.
+     * @param itemTemplate
+     */
+    public void setItemTemplate(String itemTemplate) {
+        this.itemTemplate = itemTemplate;
+
+        // rows of the previous template cannot be reused
+        recycleAll();
+        recycledItems.clear();
+        invalidateArrange();
+        invalidateVisual();
+    }
+
+    /**
+     * Sets the height of each row
+     * @param itemHeight
+     */
+    public void setItemHeight(float itemHeight) {
+        this.itemHeight = itemHeight;
+        refresh();
+    }
+
+    /**
+     * Sets the number of rows, which are created above and below the visible area
+     * @param overscan
+     */
+    public void setOverscan(int overscan) {
+        this.overscan = overscan;
+        invalidateArrange();
+        invalidateVisual();
+    }
+
+    /**
+     * Updates the rows after the content of the item source has changed
+     */
+    public void refresh() {
+        recycleAll();
+        setHeight(items.size() * itemHeight);
+        invalidateArrange();
+        invalidateVisual();
+    }
+
+    @Override
+    public void setWidth(float width) {
+        super.setWidth(width);
+
+        // the rows are sized when they are assigned to their items
+        if (items != null) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void addChild(Control child) {
+        // the rows are created from the item source
+    }
+
+    @Override
+    protected void arrangeChildren() {
+        // the rows are arranged, when they are assigned to their items
+        realizeItems();
+    }
+
+    /**
+     * Creates the rows inside the visible area and recycles the rows outside of it
+     */
+    private void realizeItems() {
+        int first = 0;
+        int last = -1;
+
+        if (itemHeight > 0 && !items.isEmpty()) {
+            updateVisibleRange();
+            first = Math.max(0, (int) Math.floor(visibleTop / itemHeight) - overscan);
+            last = Math.min(items.size() - 1, (int) Math.ceil(visibleBottom / itemHeight) + overscan);
+        }
+
+        // recycle rows, which are not visible anymore
+        Iterator<Map.Entry<Integer, Control>> iterator = realizedItems.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Control> entry = iterator.next();
+
+            if (entry.getKey() < first || entry.getKey() > last) {
+                recycle(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        // create or reuse rows, which became visible
+        for (int index = first; index <= last; index++) {
+            if (!realizedItems.containsKey(index)) {
+                Control row = recycledItems.pollFirst();
+
+                if (row == null) {
+                    row = createItemControl();
+
+                    // the loader does not add the children of the template, so they get their parents only by initializing
+                    // the row once. The item is bound afterwards, whenever the row is assigned to an item.
+                    row.initControl(null);
+                }
+
+                row.setPosition(0, index * itemHeight);
+                prepareItemControl(row, items.get(index));
+
+                children.add(row);
+                row.setParent(this);
+                realizedItems.put(index, row);
+
+                // the row has not been part of the tree, so it is laid out on its own
+                row.updateLayout();
+            }
+        }
+    }
+
+    /**
+     * Calculates the vertical range of this element, which is visible inside of the window and all clipping parents
+     * and stores its top and bottom relative to the content of this element. The absolute positions may be outdated
+     * during the layout pass, so the range is calculated from the positions inside of the parents and their scroll offsets.
+     * The clipping parents and the root arrange this element again, whenever the range may have changed.
+     */
+    private void updateVisibleRange() {
+        // top of the content of this element relative to the current parent
+        float contentTop = padding.getTop();
+        float top = Float.NEGATIVE_INFINITY;
+        float bottom = Float.POSITIVE_INFINITY;
+        Control current = this;
+
+        for (; current.parent != null; current = current.parent) {
+            Control currentParent = current.parent;
+            contentTop += current.getPositionInParentY() + currentParent.getContentOffsetY();
+
+            if (currentParent.isClippingChildren()) {
+                float parentTop = currentParent.padding.getTop();
+                top = Math.max(top, parentTop - contentTop);
+                bottom = Math.min(bottom, parentTop + currentParent.getHeight() - contentTop);
+                currentParent.addViewportDependent(this);
+            }
+        }
+
+        // the root lies inside of the window, which may be resized
+        contentTop += current.getPositionInParentY();
+        visibleTop = Math.max(top, -contentTop);
+        visibleBottom = Math.min(bottom, app.height - contentTop);
+
+        if (current != this) {
+            current.addViewportDependent(this);
+        }
+    }
+
+    /**
+     * Creates a new row from the item template
+     * @return the row
+     */
+    protected Control createItemControl() {
+        Control row = null;
+
+        if (itemTemplate != null) {
+            URL resource = getClass().getResource(itemTemplate);
+            row = ControlUtils.load(resource);
+
+            // the cause has been reported by the loader
+            if (row == null) {
+                throw new IllegalStateException("The item template cannot be loaded: " + itemTemplate);
+            }
+        } else {
+            row = new Label();
+            row.setPadding(new Thickness(5, 0));
+        }
+
+        return row;
+    }
+
+    /**
+     * Assigns an item to a row and sizes the row, so that it fills the width of this element and the height of one item.
+     * Items, which notify property changes, become the binding context of the row. Otherwise a text row shows the string
+     * representation of the item.
+     * @param row
+     * @param item
+     */
+    protected void prepareItemControl(Control row, Object item) {
+        if (item instanceof NotifyPropertyChanged) {
+            row.rebind((NotifyPropertyChanged) item);
+        } else if (row instanceof TextControl) {
+            ((TextControl) row).setText(String.valueOf(item));
+        }
+
+        row.setSize(getWidth() - row.padding.getLeft() - row.padding.getRight(), itemHeight - row.padding.getTop() - row.padding.getBottom());
+    }
+
+    /**
+     * Removes a row from this element and keeps it for later use
+     * @param row
+     */
+    private void recycle(Control row) {
+        children.remove(row);
+        row.clearBindings();
+
+        // the row must not be found by hit testing anymore
+        invalidateAbsolutePositions();
+        recycledItems.push(row);
+    }
+
+    /**
+     * Recycles all rows
+     */
+    private void recycleAll() {
+        for (Control row : realizedItems.values()) {
+            recycle(row);
+        }
+
+        realizedItems.clear();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.hansen.processing.ui.controls;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A WrapPanel places its children from left to right in cells of the same size and continues in the next line,
+ * as soon as a line is full. The number of cells in each line depends on the width of the panel and the height
+ * of the panel grows with the number of lines.
+ * <p>
+ * <b>Example:</b>
+ * <p>
+ * <pre>{@code
+ * <WrapPanel StretchHorizontal="true" ItemWidth="120" ItemHeight="90">
+ *     <Panel Fit="true" BackgroundColor="#ff336699" />
+ *     <Panel Fit="true" BackgroundColor="#ff996633" />
+ * </WrapPanel>
+ * }</pre>
+ * @author Florian Hansen
+ *
+ */
+@XmlRootElement(name = "WrapPanel")
+@XmlAccessorType(XmlAccessType.NONE)
+public class WrapPanel extends UniformPanel {
+
+    private float itemWidth = 100;
+    private float itemHeight = 100;
+
+    public WrapPanel() {
+        super();
+    }
+
+    @Override
+    protected void measureCells() {
+        int columns = itemWidth > 0 ? (int) (getWidth() / itemWidth) : 1;
+        setCells(columns, itemWidth, itemHeight);
+
+        // the size of a fitting panel is given by its parent
+        if (!isFit()) {
+            setHeight(getRowCount() * itemHeight);
+        }
+    }
+
+    /**
+     * @return the width of each cell
+     */
+    @XmlAttribute(name = "ItemWidth")
+    public float getItemWidth() {
+        return itemWidth;
+    }
+
+    /**
+     * Sets the width of each cell
+     * @param itemWidth
+     */
+    public void setItemWidth(float itemWidth) {
+        this.itemWidth = itemWidth;
+        invalidateMeasure();
+    }
+
+    /**
+     * @return the height of each cell
+     */
+    @XmlAttribute(name = "ItemHeight")
+    public float getItemHeight() {
+        return itemHeight;
+    }
+
+    /**
+     * Sets the height of each cell
+     * @param itemHeight
+     */
+    public void setItemHeight(float itemHeight) {
+        this.itemHeight = itemHeight;
+        invalidateMeasure();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.hansen.processing.ui.events;
+
+/**
+ * Event argument class for drag events. The movement is given in pixels since the last drag event, so the speed of the
+ * pointer is kept. The dispatcher reuses a single instance for all drag events, so it must not be kept after handling the event.
+ * @author Florian Hansen
+ *
+ */
+public class DragEventArgs {
+
+    private float x;
+    private float y;
+    private float deltaX;
+    private float deltaY;
+    private boolean precise;
+
+    /**
+     * Sets the values of the next drag event
+     * @param x
+     * @param y
+     * @param deltaX
+     * @param deltaY
+     * @param precise
+     */
+    public void set(float x, float y, float deltaX, float deltaY, boolean precise) {
+        this.x = x;
+        this.y = y;
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
+        this.precise = precise;
+    }
+
+    /**
+     * @return the x coordinate of the pointer in window coordinates
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * @return the y coordinate of the pointer in window coordinates
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * @return the horizontal movement since the last drag event
+     */
+    public float getDeltaX() {
+        return deltaX;
+    }
+
+    /**
+     * @return the vertical movement since the last drag event
+     */
+    public float getDeltaY() {
+        return deltaY;
+    }
+
+    /**
+     * @return true, if the element should react to the movement more precisely, e.g. because shift is held down
+     */
+    public boolean isPrecise() {
+        return precise;
+    }
+
+}
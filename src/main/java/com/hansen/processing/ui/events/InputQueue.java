@@ -0,0 +1,160 @@
+package com.hansen.processing.ui.events;
+
+import processing.event.Event;
+import processing.event.MouseEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the input events arriving between two frames, so that they are handled once at the beginning of the next frame
+ * on the thread drawing the frames. Events can be posted from any thread.
+ * <p>
+ * Consecutive events, which only describe the latest state, are coalesced: a mouse move replaces the previous move,
+ * a drag replaces the previous drag and the rotations of consecutive wheel events are summed. Presses, releases,
+ * clicks and key events are never coalesced and keep their order. Controls, which need every position, e.g. to draw
+ * a stroke, read the events merged into the current one by {@link #getCoalescedEvents()}. Coalescing can be disabled,
+ * so that every event is handled on its own.
+ * @author Florian Hansen
+ *
+ */
+public class InputQueue {
+
+    private boolean coalescing = true;
+
+    // events posted since the last frame
+    private List<Event> pendingEvents = new ArrayList<>();
+    private List<Event> pendingRawEvents = new ArrayList<>();
+    private int[] pendingRawStart = new int[16];
+
+    // events handled in the current frame
+    private List<Event> events = new ArrayList<>();
+    private List<Event> rawEvents = new ArrayList<>();
+    private int[] rawStart = new int[16];
+    private int currentEvent = -1;
+
+    /**
+     * @return true, if consecutive moves, drags and wheel events are merged
+     */
+    public synchronized boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Enables or disables coalescing. If disabled, every event is handled on its own.
+     * @param coalescing
+     */
+    public synchronized void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Adds an event to the queue or merges it into the last queued event
+     * @param event
+     */
+    public synchronized void post(Event event) {
+        int last = pendingEvents.size() - 1;
+        pendingRawEvents.add(event);
+
+        if (coalescing && last >= 0) {
+            Event merged = merge(pendingEvents.get(last), event);
+
+            if (merged != null) {
+                pendingEvents.set(last, merged);
+                return;
+            }
+        }
+
+        if (pendingEvents.size() == pendingRawStart.length) {
+            pendingRawStart = Arrays.copyOf(pendingRawStart, pendingRawStart.length * 2);
+        }
+
+        pendingRawStart[pendingEvents.size()] = pendingRawEvents.size() - 1;
+        pendingEvents.add(event);
+    }
+
+    /**
+     * @return true, if events are waiting to be handled
+     */
+    public synchronized boolean hasEvents() {
+        return !pendingEvents.isEmpty();
+    }
+
+    /**
+     * Handles all events, which have been posted until now, in their order. Events posted by the handler
+     * are handled in the next frame.
+     * @param handler
+     */
+    public void process(Consumer<Event> handler) {
+        synchronized (this) {
+            List<Event> swappedEvents = events;
+            List<Event> swappedRawEvents = rawEvents;
+            int[] swappedRawStart = rawStart;
+
+            events = pendingEvents;
+            rawEvents = pendingRawEvents;
+            rawStart = pendingRawStart;
+
+            pendingEvents = swappedEvents;
+            pendingRawEvents = swappedRawEvents;
+            pendingRawStart = swappedRawStart;
+        }
+
+        try {
+            for (currentEvent = 0; currentEvent < events.size(); currentEvent++) {
+                handler.accept(events.get(currentEvent));
+            }
+        } finally {
+            currentEvent = -1;
+            events.clear();
+            rawEvents.clear();
+        }
+    }
+
+    /**
+     * @return the events, which have been merged into the event handled at the moment, in the order they have arrived.
+     * Outside of handling it is empty.
+     */
+    public List<Event> getCoalescedEvents() {
+        if (currentEvent < 0) {
+            return Collections.emptyList();
+        }
+
+        int end = currentEvent + 1 < events.size() ? rawStart[currentEvent + 1] : rawEvents.size();
+        return Collections.unmodifiableList(rawEvents.subList(rawStart[currentEvent], end));
+    }
+
+    /**
+     * @param last the last queued event
+     * @param event the new event
+     * @return the event replacing both or null, if they cannot be merged
+     */
+    private static Event merge(Event last, Event event) {
+        if (!(last instanceof MouseEvent) || !(event instanceof MouseEvent)
+                || last.getAction() != event.getAction() || last.getModifiers() != event.getModifiers()) {
+            return null;
+        }
+
+        MouseEvent mouseEvent = (MouseEvent) event;
+
+        if (((MouseEvent) last).getButton() != mouseEvent.getButton()) {
+            return null;
+        }
+
+        switch (event.getAction()) {
+            case MouseEvent.MOVE:
+            case MouseEvent.DRAG:
+                // only the latest position counts, the movement is measured from the last handled position
+                return event;
+            case MouseEvent.WHEEL:
+                return new MouseEvent(mouseEvent.getNative(), mouseEvent.getMillis(), MouseEvent.WHEEL, mouseEvent.getModifiers(),
+                        mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getButton(), ((MouseEvent) last).getCount() + mouseEvent.getCount());
+            default:
+                return null;
+        }
+    }
+
+}
@@ -19,4 +19,12 @@ public interface NotifyPropertyChanged {
      */
     public void addPropertyChangedListener(EventListener<PropertyChangedEventArgs> listener);
 
+    /**
+     * Removes a property changed listener
+     * @param listener
+     */
+    public default void removePropertyChangedListener(EventListener<PropertyChangedEventArgs> listener) {
+
+    }
+
 }
@@ -104,6 +104,18 @@ public abstract class PropertyChangedObserver implements PropertyChangedEventLis
         binding.getSender().addPropertyChangedListener(this);
     }
 
+    /**
+     * Removes all bindings and stops listening to their senders
+     */
+    public void clearBindings() {
+        for (NotifyPropertyChanged sender : bindings.keySet()) {
+            sender.removePropertyChangedListener(this);
+        }
+
+        bindings.clear();
+        b.clear();
+    }
+
     /**
      * Syncs binding with each other
      */
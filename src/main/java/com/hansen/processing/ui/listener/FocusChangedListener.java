@@ -0,0 +1,19 @@
+package com.hansen.processing.ui.listener;
+
+import com.hansen.processing.ui.controls.Control;
+
+/**
+ * Interface to listen to changes of the keyboard focus
+ * @author Florian Hansen
+ *
+ */
+public interface FocusChangedListener {
+
+	/**
+	 * The focus has moved to another element
+	 * @param previous the element, which has lost the focus, or null
+	 * @param current the element, which has got the focus, or null
+	 */
+    public void onFocusChange(Control previous, Control current);
+
+}
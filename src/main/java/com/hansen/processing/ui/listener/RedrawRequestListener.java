@@ -0,0 +1,15 @@
+package com.hansen.processing.ui.listener;
+
+/**
+ * Interface to listen to requests for a new frame, e.g. because a control has been invalidated
+ * @author Florian Hansen
+ *
+ */
+public interface RedrawRequestListener {
+
+	/**
+	 * A new frame has been requested. May be called from any thread.
+	 */
+    public void onRedrawRequest();
+
+}
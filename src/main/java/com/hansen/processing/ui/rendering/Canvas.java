@@ -0,0 +1,634 @@
+package com.hansen.processing.ui.rendering;
+
+import com.hansen.processing.ui.singleton.Context;
+import com.hansen.processing.ui.singleton.RenderStatistics;
+import com.hansen.processing.ui.structures.Bounds;
+
+import processing.awt.PGraphicsJava2D;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drawing surface of the control elements. Every drawing call is forwarded to the target graphics
+ * and appended to the display lists, which are currently recorded.
+ * <p>
+ * The canvas also keeps a stack of visible areas in window coordinates. Elements, which are outside of
+ * the current visible area, are skipped while drawing. The visible area does not clip the drawing calls.
+ * Use {@link #pushClip(float, float, float, float)} to clip them, if the renderer supports it.
+ * <p>
+ * Style calls, which would not change the state of the graphics, are skipped. Translations are only
+ * applied to the graphics, when something is drawn, so pushing and popping the matrix is free. Opaque
+ * rectangles without stroke are held back until the next drawing call, so that following rectangles of
+ * the same color, which touch or lie inside of it, are merged into a single one. Call {@link #flush()}
+ * before the graphics is used without the canvas.
+ * @author Florian Hansen
+ *
+ */
+public class Canvas {
+
+    private static final int FILL_STATE = 1;
+    private static final int STROKE_STATE = 2;
+    private static final int STROKE_WEIGHT_STATE = 4;
+    private static final int TEXT_SIZE_STATE = 8;
+    private static final int TEXT_ALIGN_STATE = 16;
+
+    private final PGraphics graphics;
+    // the statistics of the context, which is current while the canvas is created, so threads drawing with other contexts are not counted
+    private final RenderStatistics statistics = Context.getInstance().getRenderStatistics();
+    private final List<DisplayList> recordings = new ArrayList<>(2);
+    private final List<Shape> clips = new ArrayList<>(4);
+
+    // left, top, right and bottom of each visible area on the stack
+    private float[] visibleAreas = new float[4 * 8];
+    private int visibleAreaCount;
+
+    // translation requested by the canvas calls and translation already applied to the graphics
+    private float translateX;
+    private float translateY;
+    private float appliedX;
+    private float appliedY;
+    private float[] matrices = new float[2 * 16];
+    private int matrixCount;
+
+    // rectangle held back to be merged with the following ones (in untranslated coordinates)
+    private boolean rectPending;
+    private int pendingColor;
+    private float pendingLeft;
+    private float pendingTop;
+    private float pendingRight;
+    private float pendingBottom;
+
+    // style, which has been recorded since the last recording began
+    private int recordedStates;
+    private int recordedFill;
+    private int recordedStroke;
+    private boolean recordedNoStroke;
+    private float recordedStrokeWeight;
+    private float recordedTextSize;
+    private int recordedTextAlignX;
+    private int recordedTextAlignY;
+
+    public Canvas(PGraphics graphics) {
+        this.graphics = graphics;
+        resetVisibleArea();
+    }
+
+    /**
+     * Returns the target graphics to read its state or to measure text.
+     * Drawing calls should be issued on the canvas or on {@link #drawDirectly()}.
+     * @return the target graphics
+     */
+    public PGraphics getGraphics() {
+        return graphics;
+    }
+
+    /**
+     * Returns the target graphics to issue drawing calls, which are not offered by the canvas.
+     * The display lists, which are currently recorded, cannot be replayed afterwards, because they would miss these calls.
+     * The calls must leave the matrix of the graphics as they found it.
+     * @return the target graphics
+     */
+    public PGraphics drawDirectly() {
+        for (DisplayList recording : recordings) {
+            recording.markIncomplete();
+        }
+
+        flush();
+
+        return graphics;
+    }
+
+    /**
+     * Forgets the matrix stack of the canvas. Must be called, when the matrix of the graphics has been reset,
+     * e.g. at the beginning of a frame or after {@link PGraphics#beginDraw()}.
+     */
+    public void resetMatrix() {
+        // a pending rectangle would be drawn with the reset matrix, so it must have been flushed before
+        rectPending = false;
+        translateX = 0;
+        translateY = 0;
+        appliedX = 0;
+        appliedY = 0;
+        matrixCount = 0;
+    }
+
+    /**
+     * Draws the rectangle, which has been held back to be merged with following ones, and applies the current
+     * translation, so that the graphics is in the state requested by the canvas calls
+     */
+    public void flush() {
+        drawPendingRect();
+        applyTranslation();
+    }
+
+    /**
+     * Draws the rectangle, which has been held back to be merged with following ones
+     */
+    private void drawPendingRect() {
+        if (rectPending) {
+            rectPending = false;
+            applyTranslation();
+
+            float x = pendingLeft - translateX;
+            float y = pendingTop - translateY;
+            float width = pendingRight - pendingLeft;
+            float height = pendingBottom - pendingTop;
+
+            graphics.rect(x, y, width, height);
+            record(DisplayList.RECT, x, y, width, height, null);
+            statistics.countRect();
+        }
+    }
+
+    /**
+     * Removes all visible areas, so that everything is visible
+     */
+    public void resetVisibleArea() {
+        visibleAreaCount = 0;
+        pushUnlimitedVisibleArea();
+    }
+
+    /**
+     * Restricts the visible area to the intersection of the current one and the given rectangle
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void pushVisibleArea(float x, float y, float width, float height) {
+        int current = (visibleAreaCount - 1) * 4;
+
+        push(Math.max(visibleAreas[current], x),
+                Math.max(visibleAreas[current + 1], y),
+                Math.min(visibleAreas[current + 2], x + width),
+                Math.min(visibleAreas[current + 3], y + height));
+    }
+
+    /**
+     * Restricts the visible area to the intersection of the current one and the given rectangle
+     * @param bounds
+     */
+    public void pushVisibleArea(Bounds bounds) {
+        pushVisibleArea(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * Makes everything visible until {@link #popVisibleArea()} is called, e.g. while recording elements for later use
+     */
+    public void pushUnlimitedVisibleArea() {
+        push(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Restores the visible area, which was active before the last push
+     */
+    public void popVisibleArea() {
+        if (visibleAreaCount > 1) {
+            visibleAreaCount--;
+        }
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return true, if the rectangle (in window coordinates) intersects the current visible area
+     */
+    public boolean isVisible(float x, float y, float width, float height) {
+        int current = (visibleAreaCount - 1) * 4;
+
+        return x < visibleAreas[current + 2] && x + width > visibleAreas[current]
+                && y < visibleAreas[current + 3] && y + height > visibleAreas[current + 1];
+    }
+
+    /**
+     * @param bounds
+     * @return true, if the bounds (in window coordinates) intersect the current visible area
+     */
+    public boolean isVisible(Bounds bounds) {
+        return isVisible(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    /**
+     * @return the left edge of the current visible area in window coordinates, which may be infinite
+     */
+    public float getVisibleLeft() {
+        return visibleAreas[(visibleAreaCount - 1) * 4];
+    }
+
+    /**
+     * @return the top edge of the current visible area in window coordinates, which may be infinite
+     */
+    public float getVisibleTop() {
+        return visibleAreas[(visibleAreaCount - 1) * 4 + 1];
+    }
+
+    /**
+     * @return the right edge of the current visible area in window coordinates, which may be infinite
+     */
+    public float getVisibleRight() {
+        return visibleAreas[(visibleAreaCount - 1) * 4 + 2];
+    }
+
+    /**
+     * @return the bottom edge of the current visible area in window coordinates, which may be infinite
+     */
+    public float getVisibleBottom() {
+        return visibleAreas[(visibleAreaCount - 1) * 4 + 3];
+    }
+
+    /**
+     * Starts to record every following drawing call into the display list. The previous content of the list is discarded.
+     * @param displayList
+     */
+    public void beginRecording(DisplayList displayList) {
+        drawPendingRect();
+        displayList.clear();
+        recordings.add(displayList);
+
+        // the list may be replayed with any style, so the style has to be recorded again
+        recordedStates = 0;
+    }
+
+    /**
+     * Stops to record drawing calls into the display list
+     * @param displayList
+     */
+    public void endRecording(DisplayList displayList) {
+        drawPendingRect();
+        recordings.remove(displayList);
+    }
+
+    /**
+     * @return true, if at least one display list is recorded
+     */
+    public boolean isRecording() {
+        return !recordings.isEmpty();
+    }
+
+    /**
+     * @return true, if the target graphics can clip drawing calls by {@link #pushClip(float, float, float, float)}
+     */
+    public boolean isClippingSupported() {
+        return graphics instanceof PGraphicsJava2D;
+    }
+
+    /**
+     * Restricts the following drawing calls to the intersection of the current clip and the given rectangle
+     * (in local coordinates) until {@link #popClip()} is called. In contrast to {@link PGraphics#clip(float, float, float, float)}
+     * clips can be nested. Nothing is clipped, if the renderer does not support it.
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void pushClip(float x, float y, float width, float height) {
+        drawPendingRect();
+
+        if (isClippingSupported()) {
+            applyTranslation();
+
+            Graphics2D g2 = ((PGraphicsJava2D) graphics).g2;
+            clips.add(g2.getClip());
+            g2.clip(new Rectangle2D.Float(x, y, width, height));
+        }
+
+        record(DisplayList.PUSH_CLIP, x, y, width, height, null);
+    }
+
+    /**
+     * Restores the clip, which was active before the last push
+     */
+    public void popClip() {
+        drawPendingRect();
+
+        if (isClippingSupported() && !clips.isEmpty()) {
+            ((PGraphicsJava2D) graphics).g2.setClip(clips.remove(clips.size() - 1));
+        }
+
+        record(DisplayList.POP_CLIP, 0);
+    }
+
+    public void fill(int color) {
+        boolean changed = !graphics.fill || graphics.fillColor != color;
+
+        if (changed) {
+            drawPendingRect();
+            graphics.fill(color);
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(FILL_STATE) || recordedFill != color)) {
+            recordedFill = color;
+            record(DisplayList.FILL, color);
+        }
+    }
+
+    public void stroke(int color) {
+        boolean changed = !graphics.stroke || graphics.strokeColor != color;
+
+        if (changed) {
+            drawPendingRect();
+            graphics.stroke(color);
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(STROKE_STATE) || recordedNoStroke || recordedStroke != color)) {
+            recordedStroke = color;
+            recordedNoStroke = false;
+            record(DisplayList.STROKE, color);
+        }
+    }
+
+    public void noStroke() {
+        boolean changed = graphics.stroke;
+
+        if (changed) {
+            drawPendingRect();
+            graphics.noStroke();
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(STROKE_STATE) || !recordedNoStroke)) {
+            recordedNoStroke = true;
+            record(DisplayList.NO_STROKE, 0);
+        }
+    }
+
+    public void strokeWeight(float weight) {
+        boolean changed = graphics.strokeWeight != weight;
+
+        if (changed) {
+            drawPendingRect();
+            graphics.strokeWeight(weight);
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(STROKE_WEIGHT_STATE) || recordedStrokeWeight != weight)) {
+            recordedStrokeWeight = weight;
+            record(DisplayList.STROKE_WEIGHT, weight, 0, 0, 0, null);
+        }
+    }
+
+    public void rect(float x, float y, float width, float height) {
+        if (graphics.rectMode != PConstants.CORNER || graphics.stroke) {
+            drawRect(x, y, width, height);
+            return;
+        }
+
+        // a transparent rectangle without stroke does not change any pixel
+        if (!graphics.fill || (graphics.fillColor >>> 24) == 0) {
+            statistics.countSkippedRect();
+            return;
+        }
+
+        float left = translateX + Math.min(x, x + width);
+        float top = translateY + Math.min(y, y + height);
+        float right = translateX + Math.max(x, x + width);
+        float bottom = translateY + Math.max(y, y + height);
+
+        if ((graphics.fillColor >>> 24) != 0xff) {
+            drawRect(x, y, width, height);
+            return;
+        }
+
+        if (rectPending && pendingColor == graphics.fillColor && merge(left, top, right, bottom)) {
+            statistics.countMergedRect();
+            return;
+        }
+
+        drawPendingRect();
+        rectPending = true;
+        pendingColor = graphics.fillColor;
+        pendingLeft = left;
+        pendingTop = top;
+        pendingRight = right;
+        pendingBottom = bottom;
+    }
+
+    public void line(float x1, float y1, float x2, float y2) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.line(x1, y1, x2, y2);
+        record(DisplayList.LINE, x1, y1, x2, y2, null);
+    }
+
+    public void textSize(float size) {
+        // processing loads its default font on the first call
+        boolean changed = graphics.textFont == null || graphics.textSize != size;
+
+        if (changed) {
+            graphics.textSize(size);
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(TEXT_SIZE_STATE) || recordedTextSize != size)) {
+            recordedTextSize = size;
+            record(DisplayList.TEXT_SIZE, size, 0, 0, 0, null);
+        }
+    }
+
+    public void textAlign(int alignX, int alignY) {
+        boolean changed = graphics.textAlign != alignX || graphics.textAlignY != alignY;
+
+        if (changed) {
+            graphics.textAlign(alignX, alignY);
+        }
+
+        statistics.countStateChange(changed);
+
+        if (isRecording() && (isUnrecorded(TEXT_ALIGN_STATE) || recordedTextAlignX != alignX || recordedTextAlignY != alignY)) {
+            recordedTextAlignX = alignX;
+            recordedTextAlignY = alignY;
+            record(DisplayList.TEXT_ALIGN, alignX, alignY, 0, 0, null);
+        }
+    }
+
+    public void text(String text, float x, float y) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.text(text, x, y);
+        record(DisplayList.TEXT, x, y, 0, 0, text);
+    }
+
+    public void text(String text, float x, float y, float width, float height) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.text(text, x, y, width, height);
+        record(DisplayList.TEXT_BOX, x, y, width, height, text);
+    }
+
+    public void image(PImage image, float x, float y) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.image(image, x, y);
+        record(DisplayList.IMAGE, x, y, 0, 0, image);
+    }
+
+    public void image(PImage image, float x, float y, float width, float height) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.image(image, x, y, width, height);
+        record(DisplayList.IMAGE_SIZED, x, y, width, height, image);
+    }
+
+    /**
+     * Draws a region of the image
+     * @param image
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param u1 left of the region in image pixels
+     * @param v1 top of the region in image pixels
+     * @param u2 right of the region in image pixels
+     * @param v2 bottom of the region in image pixels
+     */
+    public void image(PImage image, float x, float y, float width, float height, int u1, int v1, int u2, int v2) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.image(image, x, y, width, height, u1, v1, u2, v2);
+        record(DisplayList.IMAGE_REGION, x, y, width, height, image);
+
+        for (int i = 0; i < recordings.size(); i++) {
+            recordings.get(i).addArguments(u1, v1, u2, v2);
+        }
+    }
+
+    public void translate(float x, float y) {
+        if (x != 0 || y != 0) {
+            translateX += x;
+            translateY += y;
+            record(DisplayList.TRANSLATE, x, y, 0, 0, null);
+        }
+    }
+
+    public void pushMatrix() {
+        if (matrixCount * 2 + 2 > matrices.length) {
+            matrices = Arrays.copyOf(matrices, matrices.length * 2);
+        }
+
+        matrices[matrixCount * 2] = translateX;
+        matrices[matrixCount * 2 + 1] = translateY;
+        matrixCount++;
+        record(DisplayList.PUSH_MATRIX, 0);
+    }
+
+    public void popMatrix() {
+        if (matrixCount > 0) {
+            matrixCount--;
+            translateX = matrices[matrixCount * 2];
+            translateY = matrices[matrixCount * 2 + 1];
+        }
+
+        record(DisplayList.POP_MATRIX, 0);
+    }
+
+    /**
+     * Draws the rectangle immediately
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    private void drawRect(float x, float y, float width, float height) {
+        drawPendingRect();
+        applyTranslation();
+        graphics.rect(x, y, width, height);
+        record(DisplayList.RECT, x, y, width, height, null);
+        statistics.countRect();
+    }
+
+    /**
+     * Extends the pending rectangle by the given one, if the result covers exactly the same pixels
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @return true, if the rectangle has been merged
+     */
+    private boolean merge(float left, float top, float right, float bottom) {
+        // inside of the pending rectangle
+        if (left >= pendingLeft && top >= pendingTop && right <= pendingRight && bottom <= pendingBottom) {
+            return true;
+        }
+
+        // same columns, touching or overlapping rows
+        if (left == pendingLeft && right == pendingRight && top <= pendingBottom && bottom >= pendingTop) {
+            pendingTop = Math.min(pendingTop, top);
+            pendingBottom = Math.max(pendingBottom, bottom);
+            return true;
+        }
+
+        // same rows, touching or overlapping columns
+        if (top == pendingTop && bottom == pendingBottom && left <= pendingRight && right >= pendingLeft) {
+            pendingLeft = Math.min(pendingLeft, left);
+            pendingRight = Math.max(pendingRight, right);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Applies the translation of the canvas to the graphics, before something is drawn
+     */
+    private void applyTranslation() {
+        if (translateX != appliedX || translateY != appliedY) {
+            graphics.translate(translateX - appliedX, translateY - appliedY);
+            appliedX = translateX;
+            appliedY = translateY;
+            statistics.countStateChange(true);
+        }
+    }
+
+    /**
+     * @param state
+     * @return true, if the style has not been recorded since the last recording began. The style is marked as recorded.
+     */
+    private boolean isUnrecorded(int state) {
+        boolean unrecorded = (recordedStates & state) == 0;
+        recordedStates |= state;
+        return unrecorded;
+    }
+
+    private void push(float left, float top, float right, float bottom) {
+        if ((visibleAreaCount + 1) * 4 > visibleAreas.length) {
+            visibleAreas = Arrays.copyOf(visibleAreas, visibleAreas.length * 2);
+        }
+
+        int index = visibleAreaCount * 4;
+        visibleAreas[index] = left;
+        visibleAreas[index + 1] = top;
+        visibleAreas[index + 2] = right;
+        visibleAreas[index + 3] = bottom;
+        visibleAreaCount++;
+    }
+
+    private void record(int command, int value) {
+        for (int i = 0; i < recordings.size(); i++) {
+            recordings.get(i).add(command, value);
+        }
+    }
+
+    private void record(int command, float a, float b, float c, float d, Object reference) {
+        for (int i = 0; i < recordings.size(); i++) {
+            recordings.get(i).add(command, a, b, c, d, reference);
+        }
+    }
+
+}
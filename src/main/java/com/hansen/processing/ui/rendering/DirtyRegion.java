@@ -0,0 +1,149 @@
+package com.hansen.processing.ui.rendering;
+
+import com.hansen.processing.ui.controls.Control;
+import com.hansen.processing.ui.structures.Bounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The DirtyRegion collects the areas of the window, which have to be repainted in the next frame.
+ * Controls register themselves by calling {@link Control#invalidateVisual()}. Their areas are resolved lazily
+ * at the beginning of a frame, so that multiple property changes of the same element cost nothing more than one.
+ * @author Florian Hansen
+ *
+ */
+public class DirtyRegion {
+
+    // more rectangles than this are merged into a single one, because every rectangle costs a traversal of the tree
+    private static final int MAX_RECTANGLES = 8;
+
+    private boolean enabled;
+    private Set<Control> invalidControls = Collections.newSetFromMap(new IdentityHashMap<>());
+    private List<Bounds> rectangles = new ArrayList<>();
+
+    /**
+     * @return true, if invalidated areas are collected
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the collection of invalidated areas. Disabling it drops everything collected so far.
+     * @param enabled
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled) {
+            invalidControls.clear();
+            rectangles.clear();
+        }
+    }
+
+    /**
+     * Marks the area of a control as invalid. The area is resolved, when the region is collected.
+     * @param control
+     */
+    public synchronized void invalidate(Control control) {
+        if (enabled) {
+            invalidControls.add(control);
+        }
+    }
+
+    /**
+     * Marks an area of the window as invalid
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public synchronized void invalidate(float x, float y, float width, float height) {
+        if (enabled) {
+            add(x, y, width, height);
+        }
+    }
+
+    /**
+     * @return true, if nothing has to be repainted
+     */
+    public synchronized boolean isEmpty() {
+        return invalidControls.isEmpty() && rectangles.isEmpty();
+    }
+
+    /**
+     * Resolves the areas of all invalidated controls and returns the rectangles, which have to be repainted.
+     * The region is empty afterwards.
+     * @param root The root of the tree, which is painted. Invalidated controls outside of this tree are ignored.
+     * @return the rectangles to repaint
+     */
+    public synchronized List<Bounds> collect(Control root) {
+        for (Control control : invalidControls) {
+            // the area the control covered before has to be repainted as well as the area it covers now
+            add(control.getPaintedBounds());
+
+            if (control.getRoot() == root) {
+                Bounds visualBounds = control.getVisualBounds();
+
+                if (visualBounds != null) {
+                    add(visualBounds);
+                }
+            }
+        }
+
+        invalidControls.clear();
+
+        List<Bounds> result = rectangles;
+        rectangles = new ArrayList<>();
+
+        return result;
+    }
+
+    private void add(Bounds bounds) {
+        add(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    private void add(float x, float y, float width, float height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // snap to whole pixels and grow by one pixel to include anti aliased edges
+        float left = (float) Math.floor(x) - 1;
+        float top = (float) Math.floor(y) - 1;
+        float right = (float) Math.ceil(x + width) + 1;
+        float bottom = (float) Math.ceil(y + height) + 1;
+        Bounds bounds = new Bounds(left, top, right - left, bottom - top);
+
+        // merge with every overlapping rectangle, so that no area is painted twice
+        for (int i = rectangles.size() - 1; i >= 0; i--) {
+            Bounds rectangle = rectangles.get(i);
+
+            if (rectangle.intersects(bounds)) {
+                bounds.union(rectangle);
+                rectangles.remove(i);
+
+                // the merged rectangle has grown, so check the remaining rectangles again
+                i = rectangles.size();
+            }
+        }
+
+        rectangles.add(bounds);
+
+        if (rectangles.size() > MAX_RECTANGLES) {
+            Bounds union = new Bounds();
+
+            for (Bounds rectangle : rectangles) {
+                union.union(rectangle);
+            }
+
+            rectangles.clear();
+            rectangles.add(union);
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.hansen.processing.ui.rendering;
+
+import processing.core.PImage;
+
+import java.util.Arrays;
+
+/**
+ * Compact buffer of recorded drawing calls, which can be replayed on a {@link Canvas}.
+ * Each command is stored as an operation code followed by its arguments, so a recording
+ * does not allocate an object per drawing call.
+ * @author Florian Hansen
+ *
+ */
+public class DisplayList {
+
+    static final int FILL = 0;
+    static final int STROKE = 1;
+    static final int NO_STROKE = 2;
+    static final int STROKE_WEIGHT = 3;
+    static final int RECT = 4;
+    static final int LINE = 5;
+    static final int TEXT_SIZE = 6;
+    static final int TEXT_ALIGN = 7;
+    static final int TEXT = 8;
+    static final int TEXT_BOX = 9;
+    static final int IMAGE = 10;
+    static final int IMAGE_SIZED = 11;
+    static final int TRANSLATE = 12;
+    static final int PUSH_MATRIX = 13;
+    static final int POP_MATRIX = 14;
+    static final int PUSH_CLIP = 15;
+    static final int POP_CLIP = 16;
+    static final int IMAGE_REGION = 17;
+
+    private int[] commands = new int[32];
+    private float[] arguments = new float[64];
+    private Object[] references = new Object[8];
+    private int commandCount;
+    private int argumentCount;
+    private int referenceCount;
+    private boolean complete = true;
+
+    /**
+     * Draws all recorded calls on the canvas
+     * @param canvas
+     */
+    public void replay(Canvas canvas) {
+        int a = 0;
+        int r = 0;
+
+        for (int i = 0; i < commandCount; i++) {
+            switch (commands[i]) {
+                case FILL:
+                    canvas.fill(commands[++i]);
+                    break;
+                case STROKE:
+                    canvas.stroke(commands[++i]);
+                    break;
+                case NO_STROKE:
+                    i++;
+                    canvas.noStroke();
+                    break;
+                case STROKE_WEIGHT:
+                    canvas.strokeWeight(arguments[a]);
+                    a += 4;
+                    break;
+                case RECT:
+                    canvas.rect(arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3]);
+                    a += 4;
+                    break;
+                case LINE:
+                    canvas.line(arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3]);
+                    a += 4;
+                    break;
+                case TEXT_SIZE:
+                    canvas.textSize(arguments[a]);
+                    a += 4;
+                    break;
+                case TEXT_ALIGN:
+                    canvas.textAlign((int) arguments[a], (int) arguments[a + 1]);
+                    a += 4;
+                    break;
+                case TEXT:
+                    canvas.text((String) references[r++], arguments[a], arguments[a + 1]);
+                    a += 4;
+                    break;
+                case TEXT_BOX:
+                    canvas.text((String) references[r++], arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3]);
+                    a += 4;
+                    break;
+                case IMAGE:
+                    canvas.image((PImage) references[r++], arguments[a], arguments[a + 1]);
+                    a += 4;
+                    break;
+                case IMAGE_SIZED:
+                    canvas.image((PImage) references[r++], arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3]);
+                    a += 4;
+                    break;
+                case IMAGE_REGION:
+                    canvas.image((PImage) references[r++], arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3],
+                            (int) arguments[a + 4], (int) arguments[a + 5], (int) arguments[a + 6], (int) arguments[a + 7]);
+                    a += 8;
+                    break;
+                case TRANSLATE:
+                    canvas.translate(arguments[a], arguments[a + 1]);
+                    a += 4;
+                    break;
+                case PUSH_MATRIX:
+                    i++;
+                    canvas.pushMatrix();
+                    break;
+                case POP_MATRIX:
+                    i++;
+                    canvas.popMatrix();
+                    break;
+                case PUSH_CLIP:
+                    canvas.pushClip(arguments[a], arguments[a + 1], arguments[a + 2], arguments[a + 3]);
+                    a += 4;
+                    break;
+                case POP_CLIP:
+                    i++;
+                    canvas.popClip();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown display list command: " + commands[i]);
+            }
+        }
+    }
+
+    /**
+     * Discards all recorded calls
+     */
+    public void clear() {
+        Arrays.fill(references, 0, referenceCount, null);
+        commandCount = 0;
+        argumentCount = 0;
+        referenceCount = 0;
+        complete = true;
+    }
+
+    /**
+     * @return true, if no call has been recorded
+     */
+    public boolean isEmpty() {
+        return commandCount == 0;
+    }
+
+    /**
+     * @return true, if every drawing call has been recorded, so that replaying the list is equal to drawing again
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Marks the recording as incomplete, because some drawing calls have bypassed the canvas
+     */
+    void markIncomplete() {
+        complete = false;
+    }
+
+    /**
+     * Appends a command with an integer argument
+     * @param command
+     * @param value
+     */
+    void add(int command, int value) {
+        if (commandCount + 2 > commands.length) {
+            commands = Arrays.copyOf(commands, commands.length * 2);
+        }
+
+        commands[commandCount++] = command;
+        commands[commandCount++] = value;
+    }
+
+    /**
+     * Appends a command with four float arguments and an optional reference (text or image)
+     * @param command
+     * @param a
+     * @param b
+     * @param c
+     * @param d
+     * @param reference
+     */
+    void add(int command, float a, float b, float c, float d, Object reference) {
+        if (commandCount + 1 > commands.length) {
+            commands = Arrays.copyOf(commands, commands.length * 2);
+        }
+
+        commands[commandCount++] = command;
+        addArguments(a, b, c, d);
+
+        if (reference != null) {
+            if (referenceCount == references.length) {
+                references = Arrays.copyOf(references, references.length * 2);
+            }
+
+            references[referenceCount++] = reference;
+        }
+    }
+
+    /**
+     * Appends four more float arguments to the last command, e.g. the image region of {@link #IMAGE_REGION}
+     * @param a
+     * @param b
+     * @param c
+     * @param d
+     */
+    void addArguments(float a, float b, float c, float d) {
+        if (argumentCount + 4 > arguments.length) {
+            arguments = Arrays.copyOf(arguments, arguments.length * 2);
+        }
+
+        arguments[argumentCount++] = a;
+        arguments[argumentCount++] = b;
+        arguments[argumentCount++] = c;
+        arguments[argumentCount++] = d;
+    }
+
+}
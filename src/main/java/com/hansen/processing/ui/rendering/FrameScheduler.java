@@ -0,0 +1,219 @@
+package com.hansen.processing.ui.rendering;
+
+import com.hansen.processing.ui.singleton.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs timed callbacks on the thread, which draws the frames, so that timers and animations need no threads of their own
+ * and can change controls without synchronization. The application calls {@link #advance()} at the beginning of every frame,
+ * which runs every callback due until then.
+ * <p>
+ * Timers are kept in a timing wheel of slots, which cover a frame each. Advancing only looks at the slots passed since the
+ * last frame, so the cost of a frame does not depend on the number of timers, which are not due yet.
+ * @author Florian Hansen
+ *
+ */
+public class FrameScheduler {
+
+    private static final int WHEEL_SIZE = 64;
+    private static final long SLOT_DURATION = 16;
+
+    private final LongSupplier clock;
+    private final List<List<Timer>> slots = new ArrayList<>(WHEEL_SIZE);
+    private final List<Timer> dueTimers = new ArrayList<>();
+    private long currentTick;
+    private long frameTime;
+    private int timerCount;
+
+    /**
+     * Creates a scheduler, which measures the time in milliseconds by {@link System#nanoTime()}
+     */
+    public FrameScheduler() {
+        this(() -> System.nanoTime() / 1000000);
+    }
+
+    /**
+     * Creates a scheduler
+     * @param clock returns the current time in milliseconds
+     */
+    public FrameScheduler(LongSupplier clock) {
+        this.clock = clock;
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>(2));
+        }
+
+        frameTime = clock.getAsLong();
+        currentTick = frameTime / SLOT_DURATION;
+    }
+
+    /**
+     * Calls the callback once after the delay
+     * @param delay in milliseconds
+     * @param callback
+     * @return the timer, which can be cancelled
+     */
+    public Timer schedule(long delay, Runnable callback) {
+        return start(new Timer(this, callback, 0), delay);
+    }
+
+    /**
+     * Calls the callback repeatedly, the first time after one interval
+     * @param interval in milliseconds
+     * @param callback
+     * @return the timer, which can be cancelled
+     */
+    public Timer scheduleRepeating(long interval, Runnable callback) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval has to be positive: " + interval);
+        }
+
+        return start(new Timer(this, callback, interval), interval);
+    }
+
+    /**
+     * @return true, if at least one timer is waiting
+     */
+    public synchronized boolean hasTimers() {
+        return timerCount > 0;
+    }
+
+    /**
+     * @return the time of the current frame in milliseconds, which is measured once in {@link #advance()}
+     */
+    public synchronized long getFrameTime() {
+        return frameTime;
+    }
+
+    /**
+     * Measures the frame time and runs every callback, which is due until then. Repeating timers, which have missed
+     * several intervals (e.g. while no frames have been drawn), are called only once.
+     */
+    public void advance() {
+        synchronized (this) {
+            frameTime = Math.max(frameTime, clock.getAsLong());
+            long tick = frameTime / SLOT_DURATION;
+
+            // the slot of the last frame may contain timers, which were not due at that time
+            long firstTick = Math.max(currentTick, tick - WHEEL_SIZE + 1);
+
+            for (long t = firstTick; t <= tick; t++) {
+                collectDueTimers(slots.get(slotOf(t)));
+            }
+
+            currentTick = tick;
+
+            for (Timer timer : dueTimers) {
+                if (timer.interval > 0 && !timer.cancelled) {
+                    timer.dueTime = Math.max(timer.dueTime + timer.interval, frameTime + 1);
+                    insert(timer);
+                }
+            }
+        }
+
+        // callbacks may schedule or cancel timers, so they are called without holding the lock
+        for (int i = 0; i < dueTimers.size(); i++) {
+            Timer timer = dueTimers.get(i);
+
+            // a previous callback may have cancelled the timer
+            if (!timer.isCancelled()) {
+                timer.callback.run();
+            }
+        }
+
+        dueTimers.clear();
+    }
+
+    private Timer start(Timer timer, long delay) {
+        synchronized (this) {
+            // the frame time is outdated, if no frames have been drawn for a while
+            timer.dueTime = Math.max(frameTime, clock.getAsLong()) + Math.max(delay, 0);
+            insert(timer);
+        }
+
+        // make sure, that frames are drawn, while a timer is waiting
+        Context.getInstance().requestRedraw();
+
+        return timer;
+    }
+
+    private void insert(Timer timer) {
+        slots.get(slotOf(timer.dueTime / SLOT_DURATION)).add(timer);
+        timer.active = true;
+        timerCount++;
+    }
+
+    private synchronized void cancel(Timer timer) {
+        timer.cancelled = true;
+
+        if (timer.active && slots.get(slotOf(timer.dueTime / SLOT_DURATION)).remove(timer)) {
+            timer.active = false;
+            timerCount--;
+        }
+    }
+
+    private void collectDueTimers(List<Timer> slot) {
+        for (int i = slot.size() - 1; i >= 0; i--) {
+            Timer timer = slot.get(i);
+
+            if (timer.dueTime <= frameTime) {
+                slot.remove(i);
+                timer.active = false;
+                timerCount--;
+                dueTimers.add(timer);
+            }
+        }
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick & (WHEEL_SIZE - 1));
+    }
+
+    /**
+     * A callback waiting in the scheduler
+     */
+    public static final class Timer {
+
+        private final FrameScheduler scheduler;
+        private final Runnable callback;
+        private final long interval;
+        private long dueTime;
+        private boolean active;
+        private boolean cancelled;
+
+        private Timer(FrameScheduler scheduler, Runnable callback, long interval) {
+            this.scheduler = scheduler;
+            this.callback = callback;
+            this.interval = interval;
+        }
+
+        /**
+         * Removes the timer from the scheduler, so that its callback is not called anymore
+         */
+        public void cancel() {
+            scheduler.cancel(this);
+        }
+
+        /**
+         * @return true, if the callback is going to be called
+         */
+        public boolean isActive() {
+            synchronized (scheduler) {
+                return active;
+            }
+        }
+
+        /**
+         * @return true, if the timer has been cancelled
+         */
+        public boolean isCancelled() {
+            synchronized (scheduler) {
+                return cancelled;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.hansen.processing.ui.rendering;
+
+import processing.core.PFont;
+import processing.core.PGraphics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the advance widths of glyphs for one font in one size. Each advance is measured
+ * only once, afterwards text widths can be summed up without asking the renderer.
+ * @author Florian Hansen
+ *
+ */
+public class GlyphMetrics {
+
+    private static final int LATIN_GLYPHS = 256;
+    private static final Map<PFont, Map<Float, GlyphMetrics>> metrics = new WeakHashMap<>();
+
+    private final float[] latinAdvances = new float[LATIN_GLYPHS];
+    private final Map<Character, Float> advances = new HashMap<>();
+
+    private GlyphMetrics() {
+        Arrays.fill(latinAdvances, -1.0f);
+    }
+
+    /**
+     * Returns the shared glyph metrics of a font in a specific size
+     * @param font
+     * @param size
+     * @return the glyph metrics
+     */
+    public static synchronized GlyphMetrics getInstance(PFont font, float size) {
+        Map<Float, GlyphMetrics> sizes = metrics.get(font);
+
+        if (sizes == null) {
+            sizes = new HashMap<>();
+            metrics.put(font, sizes);
+        }
+
+        GlyphMetrics glyphMetrics = sizes.get(size);
+
+        if (glyphMetrics == null) {
+            glyphMetrics = new GlyphMetrics();
+            sizes.put(size, glyphMetrics);
+        }
+
+        return glyphMetrics;
+    }
+
+    /**
+     * Returns the advance width of a glyph. If the glyph has not been measured yet, the graphics
+     * is used to measure it, so its current font and text size have to match these metrics.
+     * @param g
+     * @param c
+     * @return the advance width
+     */
+    public synchronized float getAdvance(PGraphics g, char c) {
+        if (c < LATIN_GLYPHS) {
+            float advance = latinAdvances[c];
+
+            if (advance < 0) {
+                advance = g.textWidth(c);
+                latinAdvances[c] = advance;
+            }
+
+            return advance;
+        }
+
+        Float advance = advances.get(c);
+
+        if (advance == null) {
+            advance = g.textWidth(c);
+            advances.put(c, advance);
+        }
+
+        return advance;
+    }
+
+    /**
+     * Calculates the widths of all prefixes of a text. The element at index {@code i} is the width
+     * of the first {@code i} characters, so the last element is the width of the whole text.
+     * @param g graphics with the font and text size of these metrics
+     * @param text
+     * @param widths array to reuse, if it is big enough (may be <b>null</b>)
+     * @return the prefix widths with a length of at least {@code text.length() + 1}
+     */
+    public float[] getPrefixWidths(PGraphics g, String text, float[] widths) {
+        int length = text.length();
+
+        if (widths == null || widths.length < length + 1) {
+            widths = new float[length + 1];
+        }
+
+        widths[0] = 0.0f;
+
+        for (int i = 0; i < length; i++) {
+            widths[i + 1] = widths[i] + getAdvance(g, text.charAt(i));
+        }
+
+        return widths;
+    }
+
+}
@@ -1,30 +1,82 @@
 package com.hansen.processing.ui.singleton;
 
+import com.hansen.processing.ui.controller.Controller;
+import com.hansen.processing.ui.controls.Control;
+import com.hansen.processing.ui.events.InputQueue;
+import com.hansen.processing.ui.listener.RedrawRequestListener;
+import com.hansen.processing.ui.rendering.DirtyRegion;
+import com.hansen.processing.ui.rendering.FrameScheduler;
+
 import processing.core.PApplet;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Singleton class to store information about the current renderer and processing application
+ * <p>
+ * A thread can bind its own context by {@link #bind(Context)}, e.g. to build and render control trees
+ * without a window. While bound, {@link #getInstance()} returns it instead of the shared instance on that thread.
  * @author Florian Hansen
  *
  */
 public class Context {
 
-    private static Context instance;
+    private static volatile Context instance;
+    private static final ThreadLocal<Context> boundContext = new ThreadLocal<>();
 
     private PApplet app;
     private String renderer;
+    private DirtyRegion dirtyRegion = new DirtyRegion();
+    private final FrameScheduler scheduler = new FrameScheduler();
+    private final InputQueue inputQueue = new InputQueue();
+    private volatile RedrawRequestListener redrawRequestListener;
+    private final List<Controller> controllers = new CopyOnWriteArrayList<>();
+    private final Map<String, Control> controlIds = new ConcurrentHashMap<>();
+    private final AtomicInteger positionGeneration = new AtomicInteger();
+    private final RenderStatistics renderStatistics = new RenderStatistics();
 
     /**
-     * @return the context instance
+     * @return the context bound to the current thread or the shared context instance
      */
     public static Context getInstance() {
+        Context context = boundContext.get();
+
+        if (context != null) {
+            return context;
+        }
+
         if (instance == null) {
-            instance = new Context();
+            synchronized (Context.class) {
+                if (instance == null) {
+                    instance = new Context();
+                }
+            }
         }
 
         return instance;
     }
 
+    /**
+     * Binds a context to the current thread, so that {@link #getInstance()} returns it on this thread
+     * @param context the context to bind or <b>null</b> to use the shared instance again
+     * @return the context, which has been bound to the thread before, or <b>null</b>
+     */
+    public static Context bind(Context context) {
+        Context previous = boundContext.get();
+
+        if (context != null) {
+            boundContext.set(context);
+        } else {
+            boundContext.remove();
+        }
+
+        return previous;
+    }
+
     /**
      * @return the app
      */
@@ -54,4 +106,81 @@ public class Context {
     public void setRenderer(String renderer) {
 		this.renderer = renderer;
 	}
+    
+    /**
+     * @return the region of the window, which has to be repainted
+     */
+    public DirtyRegion getDirtyRegion() {
+    	return dirtyRegion;
+    }
+    
+    /**
+     * @return the scheduler, which runs timers and animations on the thread drawing the frames
+     */
+    public FrameScheduler getScheduler() {
+    	return scheduler;
+    }
+    
+    /**
+     * @return the queue, which collects the input events until they are handled at the beginning of the next frame
+     */
+    public InputQueue getInputQueue() {
+    	return inputQueue;
+    }
+    
+    /**
+     * @return the controllers, which have been created in this context
+     */
+    public List<Controller> getControllers() {
+    	return controllers;
+    }
+    
+    /**
+     * @return the controls, which have been created in this context, by their name / id
+     */
+    public Map<String, Control> getControlIds() {
+    	return controlIds;
+    }
+    
+    /**
+     * Marks the cached absolute positions of the controls, which have been created in this context, as outdated.
+     * Trees of other contexts keep their positions.
+     */
+    public void invalidatePositions() {
+    	positionGeneration.incrementAndGet();
+    }
+    
+    /**
+     * @return a number, which changes whenever a control of this context may have moved
+     */
+    public int getPositionGeneration() {
+    	return positionGeneration.get();
+    }
+    
+    /**
+     * @return the statistics of the canvases, which have been created in this context
+     */
+    public RenderStatistics getRenderStatistics() {
+    	return renderStatistics;
+    }
+    
+    /**
+     * Sets the listener, which schedules a new frame, when it is requested. If no listener is set,
+     * the application is expected to draw continuously.
+     * @param redrawRequestListener
+     */
+    public void setRedrawRequestListener(RedrawRequestListener redrawRequestListener) {
+    	this.redrawRequestListener = redrawRequestListener;
+    }
+    
+    /**
+     * Requests a new frame, e.g. because something has changed. Can be called from any thread.
+     */
+    public void requestRedraw() {
+    	RedrawRequestListener listener = redrawRequestListener;
+    	
+    	if (listener != null) {
+    		listener.onRedrawRequest();
+    	}
+    }
 }
@@ -0,0 +1,236 @@
+package com.hansen.processing.ui.singleton;
+
+import com.hansen.processing.ui.utils.ImageUtils;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Singleton class to share rendered gradient backgrounds between elements. Images are keyed by
+ * their colors, size and border radius. The least recently used images are evicted as soon as
+ * the memory of all cached images exceeds the maximum size.
+ * <p>
+ * The images are rendered outside of the lock of the cache, so threads requesting other images are not blocked.
+ * Threads requesting an image, which is being rendered, wait for it instead of rendering it again.
+ * <p>
+ * The returned images are shared, so they must not be modified.
+ * @author Florian Hansen
+ *
+ */
+public class GradientCache {
+
+    /**
+     * Default maximum memory of all cached images in bytes
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 16 * 1024 * 1024;
+
+    private static GradientCache instance;
+
+    private final LinkedHashMap<Key, FutureTask<PImage>> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long size;
+    private int hits;
+    private int misses;
+
+    /**
+     * @return the cache instance
+     */
+    public static synchronized GradientCache getInstance() {
+        if (instance == null) {
+            instance = new GradientCache();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Returns the gradient image with a rounded rectangle mask. The image is created, if it is not cached, yet.
+     * @param colorTop
+     * @param colorBottom
+     * @param width
+     * @param height
+     * @param borderRadius
+     * @return the shared image or <b>null</b>, if the size is empty
+     */
+    public PImage get(int colorTop, int colorBottom, int width, int height, int borderRadius) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        Key key = new Key(colorTop, colorBottom, width, height, borderRadius);
+        FutureTask<PImage> task;
+        boolean rendering = false;
+
+        synchronized (this) {
+            task = images.get(key);
+
+            if (task != null) {
+                hits++;
+            } else {
+                misses++;
+
+                PApplet app = Context.getInstance().getApp();
+                task = new FutureTask<>(() -> ImageUtils.generateRoundedGradient(app, colorTop, colorBottom, width, height, borderRadius));
+                rendering = true;
+
+                // the size of the image is known before it is rendered
+                images.put(key, task);
+                size += key.getSize();
+                trim();
+            }
+        }
+
+        if (rendering) {
+            task.run();
+        }
+
+        return await(key, task);
+    }
+
+    /**
+     * @return the maximum memory of all cached images in bytes
+     */
+    public synchronized long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum memory of all cached images in bytes
+     * @param maximumSize
+     */
+    public synchronized void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+        trim();
+    }
+
+    /**
+     * @return the memory of all cached images in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of requests, which could be served from the cache
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests, which had to create a new image
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all cached images
+     */
+    public synchronized void clear() {
+        images.clear();
+        size = 0;
+    }
+
+    /**
+     * Waits for an image, which is rendered by this or another thread. An image, which cannot be rendered,
+     * is removed from the cache, so that the next request renders it again.
+     * @param key
+     * @param task
+     * @return the image
+     */
+    private PImage await(Key key, FutureTask<PImage> task) {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // the image is needed to draw the element, so the interruption is only passed on
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    synchronized (this) {
+                        if (images.remove(key, task)) {
+                            size -= key.getSize();
+                        }
+                    }
+
+                    throw new IllegalStateException("The gradient cannot be rendered", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used images until the cache fits into its maximum size.
+     * The most recently used image is always kept. Threads waiting for an evicted image still receive it.
+     */
+    private void trim() {
+        Iterator<Key> iterator = images.keySet().iterator();
+
+        while (size > maximumSize && images.size() > 1 && iterator.hasNext()) {
+            size -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Lookup key of a gradient image
+     */
+    private static final class Key {
+
+        private final int colorTop;
+        private final int colorBottom;
+        private final int width;
+        private final int height;
+        private final int borderRadius;
+
+        Key(int colorTop, int colorBottom, int width, int height, int borderRadius) {
+            this.colorTop = colorTop;
+            this.colorBottom = colorBottom;
+            this.width = width;
+            this.height = height;
+            this.borderRadius = borderRadius;
+        }
+
+        /**
+         * @return the memory of the image in bytes
+         */
+        long getSize() {
+            return (long) width * height * 4;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return colorTop == other.colorTop && colorBottom == other.colorBottom
+                    && width == other.width && height == other.height
+                    && borderRadius == other.borderRadius;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = colorTop;
+            hash = 31 * hash + colorBottom;
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + borderRadius;
+            return hash;
+        }
+    }
+
+}
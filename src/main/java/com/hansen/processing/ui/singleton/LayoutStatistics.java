@@ -0,0 +1,265 @@
+package com.hansen.processing.ui.singleton;
+
+import com.hansen.processing.ui.controls.Control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Singleton class to count the layout callbacks of every control, e.g. to find the elements, which cause thousands
+ * of callbacks on a single window resize. Counting is disabled by default and costs nothing but a check while disabled.
+ * <p>
+ * The application calls {@link #endFrame()} at the end of every frame, so the getters describe the last completed frame,
+ * including the changes made between two frames, e.g. by resizing the window. Applications without a frame loop call it themselves.
+ * <p>
+ * Besides counting, two kinds of resize loops are detected: an element, which is resized again while it is still informing
+ * its resize listeners (re-entrant resize), and a layout pass, which does not settle within the maximum number of passes.
+ * @author Florian Hansen
+ *
+ */
+public class LayoutStatistics {
+
+    /**
+     * The layout callbacks, which are counted
+     * @author Florian Hansen
+     *
+     */
+    public enum Counter {
+
+        /** Calls of {@link Control#setWidth(float)} */
+        SET_WIDTH,
+
+        /** Calls of {@link Control#setHeight(float)} */
+        SET_HEIGHT,
+
+        /** Calls of {@link Control#onControlResize(float, float)} */
+        CONTROL_RESIZE,
+
+        /** Notifications of all resize listeners of an element */
+        RESIZE_LISTENERS,
+
+        /** Layout passes started by {@link Control#updateLayout()} */
+        LAYOUT_PASS,
+
+        /** Recalculations of the rows and columns of a Grid */
+        GRID_UPDATE,
+
+        /** Recalculations of the size of a StackPanel */
+        STACK_PANEL_RECALCULATION
+
+    }
+
+    private static final int REPORTED_CONTROLS = 10;
+
+    private static LayoutStatistics instance;
+
+    private volatile boolean enabled;
+    private Map<Control, int[]> counts = new IdentityHashMap<>();
+    private Set<Control> resizeLoops = new LinkedHashSet<>();
+    private Set<Control> unsettledLayouts = new LinkedHashSet<>();
+    private Map<Control, int[]> frameCounts = Collections.emptyMap();
+    private Set<Control> frameResizeLoops = Collections.emptySet();
+    private Set<Control> frameUnsettledLayouts = Collections.emptySet();
+
+    /**
+     * @return the statistics instance
+     */
+    public static synchronized LayoutStatistics getInstance() {
+        if (instance == null) {
+            instance = new LayoutStatistics();
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return true, if layout callbacks are counted
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables counting. The counters of the current frame are discarded.
+     * @param enabled
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        counts.clear();
+        resizeLoops.clear();
+        unsettledLayouts.clear();
+    }
+
+    /**
+     * Counts a layout callback of an element
+     * @param control
+     * @param counter
+     */
+    public void count(Control control, Counter counter) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            counts.computeIfAbsent(control, key -> new int[Counter.values().length])[counter.ordinal()]++;
+        }
+    }
+
+    /**
+     * Records an element, which has been resized again, while it was informing its resize listeners
+     * @param control
+     */
+    public void countResizeLoop(Control control) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            resizeLoops.add(control);
+        }
+    }
+
+    /**
+     * Records an element, whose layout has not settled within the maximum number of layout passes
+     * @param control
+     */
+    public void countUnsettledLayout(Control control) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            unsettledLayouts.add(control);
+        }
+    }
+
+    /**
+     * Finishes the current frame. The counters of this frame become readable and counting starts again from zero.
+     */
+    public synchronized void endFrame() {
+        if (!enabled) {
+            return;
+        }
+
+        frameCounts = counts;
+        frameResizeLoops = resizeLoops;
+        frameUnsettledLayouts = unsettledLayouts;
+        counts = new IdentityHashMap<>();
+        resizeLoops = new LinkedHashSet<>();
+        unsettledLayouts = new LinkedHashSet<>();
+    }
+
+    /**
+     * @param control
+     * @param counter
+     * @return how often the callback of the element has run in the last frame
+     */
+    public synchronized int getCount(Control control, Counter counter) {
+        int[] controlCounts = frameCounts.get(control);
+        return controlCounts != null ? controlCounts[counter.ordinal()] : 0;
+    }
+
+    /**
+     * @param counter
+     * @return how often the callback has run for all elements in the last frame
+     */
+    public synchronized int getTotal(Counter counter) {
+        int total = 0;
+
+        for (int[] controlCounts : frameCounts.values()) {
+            total += controlCounts[counter.ordinal()];
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the elements with at least one counted callback in the last frame, ordered by their number of callbacks
+     */
+    public synchronized List<Control> getControls() {
+        List<Control> controls = new ArrayList<>(frameCounts.keySet());
+        controls.sort((first, second) -> Integer.compare(sum(frameCounts.get(second)), sum(frameCounts.get(first))));
+        return controls;
+    }
+
+    /**
+     * @return the elements, which have been resized again while informing their resize listeners in the last frame
+     */
+    public synchronized List<Control> getResizeLoops() {
+        return new ArrayList<>(frameResizeLoops);
+    }
+
+    /**
+     * @return the elements, whose layout has not settled within the maximum number of passes in the last frame
+     */
+    public synchronized List<Control> getUnsettledLayouts() {
+        return new ArrayList<>(frameUnsettledLayouts);
+    }
+
+    /**
+     * @return a readable report of the last frame listing the totals, the detected loops and the elements with the most callbacks
+     */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder("layout statistics of the last frame:");
+
+        for (Counter counter : Counter.values()) {
+            report.append(' ').append(counter.name().toLowerCase()).append('=').append(getTotal(counter));
+        }
+
+        for (Control control : frameResizeLoops) {
+            report.append("\n  re-entrant resize: ").append(describe(control));
+        }
+
+        for (Control control : frameUnsettledLayouts) {
+            report.append("\n  unsettled layout: ").append(describe(control));
+        }
+
+        List<Control> controls = getControls();
+
+        for (Control control : controls.subList(0, Math.min(REPORTED_CONTROLS, controls.size()))) {
+            report.append("\n  ").append(describe(control)).append(':');
+            int[] controlCounts = frameCounts.get(control);
+
+            for (Counter counter : Counter.values()) {
+                if (controlCounts[counter.ordinal()] > 0) {
+                    report.append(' ').append(counter.name().toLowerCase()).append('=').append(controlCounts[counter.ordinal()]);
+                }
+            }
+        }
+
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+    /**
+     * @param control
+     * @return the type and the id of the element
+     */
+    private static String describe(Control control) {
+        return control.getClass().getSimpleName() + " " + control.getId();
+    }
+
+    /**
+     * @param controlCounts
+     * @return the sum of all counters of an element
+     */
+    private static int sum(int[] controlCounts) {
+        int sum = 0;
+
+        for (int count : controlCounts) {
+            sum += count;
+        }
+
+        return sum;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.hansen.processing.ui.singleton;
+
+/**
+ * Class to count the drawing work of the canvases of a context. Each context has its own statistics, which are used
+ * by the canvases created while the context is current. The application resets the counters at the beginning of every
+ * frame, so after a frame they describe the work of that frame.
+ * <p>
+ * The counters are not synchronized. They are meant to be read on the thread, which draws with the context.
+ * @author Florian Hansen
+ *
+ */
+public class RenderStatistics {
+
+    private int stateChanges;
+    private int elidedStateChanges;
+    private int rects;
+    private int mergedRects;
+    private int skippedRects;
+
+    /**
+     * @return the statistics of the current context
+     * @see Context#getRenderStatistics()
+     */
+    public static RenderStatistics getInstance() {
+        return Context.getInstance().getRenderStatistics();
+    }
+
+    /**
+     * Sets all counters to zero
+     */
+    public void reset() {
+        stateChanges = 0;
+        elidedStateChanges = 0;
+        rects = 0;
+        mergedRects = 0;
+        skippedRects = 0;
+    }
+
+    /**
+     * @return the number of style changes (fill, stroke, text size, ...), which have been passed to the graphics
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * @return the number of style changes, which have been skipped, because the graphics already had the requested style
+     */
+    public int getElidedStateChanges() {
+        return elidedStateChanges;
+    }
+
+    /**
+     * @return the number of rectangles, which have been passed to the graphics
+     */
+    public int getRects() {
+        return rects;
+    }
+
+    /**
+     * @return the number of rectangles, which have been merged into a preceding rectangle of the same color
+     */
+    public int getMergedRects() {
+        return mergedRects;
+    }
+
+    /**
+     * @return the number of rectangles, which have been skipped, because they are invisible
+     */
+    public int getSkippedRects() {
+        return skippedRects;
+    }
+
+    /**
+     * Counts a style change
+     * @param changed true, if it has been passed to the graphics, false if it has been elided
+     */
+    public void countStateChange(boolean changed) {
+        if (changed) {
+            stateChanges++;
+        } else {
+            elidedStateChanges++;
+        }
+    }
+
+    /**
+     * Counts a rectangle passed to the graphics
+     */
+    public void countRect() {
+        rects++;
+    }
+
+    /**
+     * Counts a rectangle merged into the preceding one
+     */
+    public void countMergedRect() {
+        mergedRects++;
+    }
+
+    /**
+     * Counts an invisible rectangle, which has been skipped
+     */
+    public void countSkippedRect() {
+        skippedRects++;
+    }
+
+    @Override
+    public String toString() {
+        return "state changes: " + stateChanges + " (" + elidedStateChanges + " elided), rects: " + rects
+                + " (" + mergedRects + " merged, " + skippedRects + " skipped)";
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.hansen.processing.ui.structures;
+
+/**
+ * This class stores a rectangular area.
+ * @author Florian Hansen
+ *
+ */
+public class Bounds {
+
+    private float x;
+    private float y;
+    private float width;
+    private float height;
+
+    public Bounds() {
+
+    }
+
+    public Bounds(float x, float y, float width, float height) {
+        set(x, y, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return x + ", " + y + ", " + width + ", " + height;
+    }
+
+    /**
+     * Sets all values of the area
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void set(float x, float y, float width, float height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Copies the values of another area
+     * @param bounds
+     */
+    public void set(Bounds bounds) {
+        set(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * @return the x component of the top left corner
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * @return the y component of the top left corner
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * @return the width
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height
+     */
+    public float getHeight() {
+        return height;
+    }
+
+    /**
+     * @return true, if the area does not cover any space
+     */
+    public boolean isEmpty() {
+        return width <= 0 || height <= 0;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return true, if the point lies inside the area
+     */
+    public boolean contains(float x, float y) {
+        return x >= this.x && x <= this.x + width && y >= this.y && y <= this.y + height;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return true, if both areas overlap each other
+     */
+    public boolean intersects(float x, float y, float width, float height) {
+        return !isEmpty() && width > 0 && height > 0
+                && x < this.x + this.width && x + width > this.x
+                && y < this.y + this.height && y + height > this.y;
+    }
+
+    /**
+     * @param bounds
+     * @return true, if both areas overlap each other
+     */
+    public boolean intersects(Bounds bounds) {
+        return intersects(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Grows the area, so that it also covers the given area
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void union(float x, float y, float width, float height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        if (isEmpty()) {
+            set(x, y, width, height);
+        } else {
+            float right = Math.max(this.x + this.width, x + width);
+            float bottom = Math.max(this.y + this.height, y + height);
+
+            this.x = Math.min(this.x, x);
+            this.y = Math.min(this.y, y);
+            this.width = right - this.x;
+            this.height = bottom - this.y;
+        }
+    }
+
+    /**
+     * Grows the area, so that it also covers the given area
+     * @param bounds
+     */
+    public void union(Bounds bounds) {
+        union(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+}
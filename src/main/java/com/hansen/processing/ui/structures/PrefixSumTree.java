@@ -0,0 +1,117 @@
+package com.hansen.processing.ui.structures;
+
+import java.util.Arrays;
+
+/**
+ * This class stores a sequence of non-negative values and their prefix sums (Fenwick tree). Changing a single value,
+ * appending a value and calculating the sum of the first values take O(log n), so that positions along a sequence of
+ * sizes stay up to date without summing all sizes again. The index covering an offset is found by binary search.
+ * @author Florian Hansen
+ *
+ */
+public class PrefixSumTree {
+
+    private float[] values = new float[16];
+    private double[] tree = new double[17];
+    private int size;
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values
+     */
+    public void clear() {
+        Arrays.fill(values, 0, size, 0);
+        Arrays.fill(tree, 0, size + 1, 0);
+        size = 0;
+    }
+
+    /**
+     * Appends a value to the end of the sequence
+     * @param value
+     */
+    public void add(float value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            tree = Arrays.copyOf(tree, size * 2 + 1);
+        }
+
+        // the new node covers the value and the preceding values, which are not covered by another node
+        int node = size + 1;
+        tree[node] = value + sum(node - 1) - sum(node - (node & -node));
+        values[size++] = value;
+    }
+
+    /**
+     * @param index
+     * @return the value at the index
+     */
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Replaces the value at the index
+     * @param index
+     * @param value
+     */
+    public void set(int index, float value) {
+        double delta = (double) value - values[index];
+        values[index] = value;
+
+        for (int node = index + 1; node <= size; node += node & -node) {
+            tree[node] += delta;
+        }
+    }
+
+    /**
+     * @param count
+     * @return the sum of the first values, which is the offset of the value at this index
+     */
+    public float sum(int count) {
+        double sum = 0;
+
+        for (int node = Math.min(count, size); node > 0; node -= node & -node) {
+            sum += tree[node];
+        }
+
+        return (float) sum;
+    }
+
+    /**
+     * @return the sum of all values
+     */
+    public float total() {
+        return sum(size);
+    }
+
+    /**
+     * Searches the value covering an offset, as if all values were placed one after another starting at 0
+     * @param offset
+     * @return the index of the value or -1, if the offset lies outside of all values
+     */
+    public int indexOf(float offset) {
+        if (offset < 0) {
+            return -1;
+        }
+
+        int node = 0;
+        double remaining = offset;
+
+        // descend from the largest node, skipping every node which ends before the offset
+        for (int step = Integer.highestOneBit(Math.max(size, 1)); step > 0; step >>= 1) {
+            if (node + step <= size && tree[node + step] <= remaining) {
+                node += step;
+                remaining -= tree[node];
+            }
+        }
+
+        return node < size ? node : -1;
+    }
+
+}
@@ -7,6 +7,11 @@ package com.hansen.processing.ui.utils;
  */
 public class ColorUtils {
 
+	/**
+	 * Fully transparent color, which is used for unset colors
+	 */
+	public static final int TRANSPARENT = 0x00ffffff;
+
 	/**
 	 * Converts a color string to an integer representation of Processing
 	 * @param color
@@ -18,10 +23,19 @@ public class ColorUtils {
         if (color != null) {
             result = Long.valueOf(color.replace("#", ""), 16);
         } else {
-            result = Long.valueOf("#00ffffff".replace("#", ""), 16);
+            result = TRANSPARENT;
         }
 
         return (int) result;
     }
 
+    /**
+     * Converts an integer representation of Processing to a color string
+     * @param color
+     * @return the color string starting with {@code #} followed by the ARGB hex value
+     */
+    public static String colorToString(int color) {
+    	return String.format("#%08x", color);
+    }
+
 }
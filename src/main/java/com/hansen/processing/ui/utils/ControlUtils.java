@@ -47,7 +47,9 @@ public class ControlUtils {
     	
     	try {
     		control = XMLLoader.load(resource);
-		} catch (JAXBException | FileNotFoundException e) { }
+		} catch (JAXBException | FileNotFoundException e) {
+			e.printStackTrace();
+		}
     	
     	return control;
     }
@@ -63,7 +65,11 @@ public class ControlUtils {
     	
     	try {
     		control = XMLLoader.load(ProcessingApplication.class.getResource("/" + resourceName), controllerTarget);
-		} catch (JAXBException | FileNotFoundException e) { }
+		} catch (JAXBException e) {
+			e.printStackTrace();
+		} catch (FileNotFoundException e) {
+			// the resource is optional, e.g. for object controls
+		}
     	
     	return control;
     }
@@ -5,6 +5,13 @@ import processing.core.PConstants;
 import processing.core.PGraphics;
 import processing.core.PImage;
 
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
 /**
  * Static class to offer image utilities
  * @author Florian Hansen
@@ -13,7 +20,8 @@ import processing.core.PImage;
 public class ImageUtils implements PConstants {
 
 	/**
-	 * Creates a rectangular mask with border radius
+	 * Creates a rectangular mask with border radius. The coverage is stored in every color channel,
+	 * so the mask can be passed to {@link PImage#mask(PImage)}.
 	 * @param app
 	 * @param width
 	 * @param height
@@ -21,22 +29,30 @@ public class ImageUtils implements PConstants {
 	 * @return
 	 */
     public static PGraphics generateMask(PApplet app, int width, int height, int borderRadius) {
-        PGraphics mask = app.createGraphics(width, height);
+        final PGraphics mask = app.createGraphics(width, height);
 
+        // the pixels of the graphics are only available while drawing
         mask.beginDraw();
-        mask.background(0);
-        mask.smooth();
-        mask.noStroke();
-        mask.fill(255);
-        mask.rect(0, 0, mask.width, mask.height, borderRadius);
-        mask.endDraw();
+        mask.loadPixels();
+        final int[] pixels = mask.pixels;
+
+        RasterUtils.processRows(width, height, (rowStart, rowEnd) -> {
+            Arrays.fill(pixels, rowStart * width, rowEnd * width, 0xFFFFFFFF);
+            RasterUtils.applyRoundedRectCoverage(pixels, width, height, borderRadius, rowStart, rowEnd);
 
+            for (int i = rowStart * width; i < rowEnd * width; i++) {
+                int coverage = pixels[i] >>> 24;
+                pixels[i] = 0xFF000000 | (coverage << 16) | (coverage << 8) | coverage;
+            }
+        });
+
+        mask.updatePixels();
+        mask.endDraw();
         return mask;
     }
 
     /**
      * Generates linear gradient image
-     * Source: https://forum.processing.org/one/topic/rounded-rect-with-gradient-background.html
      * @param app
      * @param colorTop
      * @param colorBottom
@@ -45,29 +61,53 @@ public class ImageUtils implements PConstants {
      * @return
      */
     public static PImage generateGradient(PApplet app, int colorTop, int colorBottom, int width, int height) {
-        int tR = (colorTop >> 16) & 0xFF;
-        int tG = (colorTop >> 8) & 0xFF;
-        int tB = colorTop & 0xFF;
-        int bR = (colorBottom >> 16) & 0xFF;
-        int bG = (colorBottom >> 8) & 0xFF;
-        int bB = colorBottom & 0xFF;
-
-        PImage bg = app.createImage(width, height, RGB);
-        bg.loadPixels();
-
-        for (int i=0; i < bg.pixels.length; i++) {
-            int y = i/bg.width;
-            float n = y/(float)bg.height;
-
-            bg.pixels[i] = app.color(
-                    PApplet.lerp(tR, bR, n),
-                    PApplet.lerp(tG, bG, n),
-                    PApplet.lerp(tB, bB, n),
-                    255);
-        }
+        final PImage bg = app.createImage(width, height, RGB);
+        final int[] pixels = bg.pixels;
+
+        RasterUtils.processRows(width, height, (rowStart, rowEnd) ->
+                RasterUtils.fillGradient(pixels, width, height, colorTop, colorBottom, rowStart, rowEnd));
+
+        bg.updatePixels();
+        return bg;
+    }
+
+    /**
+     * Generates linear gradient image, which is clipped by a rectangle with border radius.
+     * This is equal to masking the result of {@link #generateGradient} with {@link #generateMask},
+     * but it writes the anti-aliased coverage directly into the alpha channel of the gradient.
+     * @param app
+     * @param colorTop
+     * @param colorBottom
+     * @param width
+     * @param height
+     * @param borderRadius
+     * @return
+     */
+    public static PImage generateRoundedGradient(PApplet app, int colorTop, int colorBottom, int width, int height, int borderRadius) {
+        final PImage bg = app.createImage(width, height, ARGB);
+        final int[] pixels = bg.pixels;
+
+        RasterUtils.processRows(width, height, (rowStart, rowEnd) -> {
+            RasterUtils.fillGradient(pixels, width, height, colorTop, colorBottom, rowStart, rowEnd);
+            RasterUtils.applyRoundedRectCoverage(pixels, width, height, borderRadius, rowStart, rowEnd);
+        });
 
         bg.updatePixels();
         return bg;
     }
 
+    /**
+     * Writes the image as PNG. The pixels of the image have to be loaded.
+     * @param image
+     * @param output
+     * @throws IOException
+     */
+    public static void writePng(PImage image, OutputStream output) throws IOException {
+        int type = image.format == RGB ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage bufferedImage = new BufferedImage(image.width, image.height, type);
+        bufferedImage.setRGB(0, 0, image.width, image.height, image.pixels, 0, image.width);
+
+        ImageIO.write(bufferedImage, "png", output);
+    }
+
 }
@@ -0,0 +1,170 @@
+package com.hansen.processing.ui.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Static class to offer raster kernels, which work directly on ARGB pixel arrays.
+ * The kernels do not allocate and process a range of rows, so that large images can be
+ * split across the common {@link ForkJoinPool}.
+ * @author Florian Hansen
+ *
+ */
+public class RasterUtils {
+
+	/**
+	 * Images with more pixels are processed in parallel
+	 */
+	public static final int PARALLEL_THRESHOLD = 256 * 256;
+
+	/**
+	 * Fills the rows of an image with a vertical linear gradient. The alpha channel is set to full opacity.
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param colorTop
+	 * @param colorBottom
+	 * @param rowStart first row (inclusive)
+	 * @param rowEnd last row (exclusive)
+	 */
+    public static void fillGradient(int[] pixels, int width, int height, int colorTop, int colorBottom, int rowStart, int rowEnd) {
+        int tR = (colorTop >> 16) & 0xFF;
+        int tG = (colorTop >> 8) & 0xFF;
+        int tB = colorTop & 0xFF;
+        int dR = ((colorBottom >> 16) & 0xFF) - tR;
+        int dG = ((colorBottom >> 8) & 0xFF) - tG;
+        int dB = (colorBottom & 0xFF) - tB;
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            float n = y / (float) height;
+            int color = 0xFF000000
+                    | ((int) (tR + dR * n) << 16)
+                    | ((int) (tG + dG * n) << 8)
+                    | (int) (tB + dB * n);
+
+            int offset = y * width;
+            Arrays.fill(pixels, offset, offset + width, color);
+        }
+    }
+
+    /**
+     * Multiplies the alpha channel of an image with the coverage of a rounded rectangle, which fills the whole image.
+     * Pixels on the rounded edges get a partial coverage, so the edges are anti-aliased.
+     * @param pixels
+     * @param width
+     * @param height
+     * @param borderRadius
+     * @param rowStart first row (inclusive)
+     * @param rowEnd last row (exclusive)
+     */
+    public static void applyRoundedRectCoverage(int[] pixels, int width, int height, float borderRadius, int rowStart, int rowEnd) {
+        float radius = Math.min(borderRadius, Math.min(width, height) / 2.0f);
+
+        if (radius <= 0) {
+            return;
+        }
+
+        int corner = (int) Math.ceil(radius);
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            float dy;
+
+            if (y < corner) {
+                dy = radius - (y + 0.5f);
+            } else if (y >= height - corner) {
+                dy = (y + 0.5f) - (height - radius);
+            } else {
+                // rows between the corners are fully covered
+                continue;
+            }
+
+            int offset = y * width;
+
+            for (int x = 0; x < corner; x++) {
+                float dx = radius - (x + 0.5f);
+                int right = width - 1 - x;
+
+                applyCoverage(pixels, offset + x, dx, dy, radius);
+
+                if (right > x) {
+                    applyCoverage(pixels, offset + right, dx, dy, radius);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a row kernel over all rows of an image. Large images are split across the common {@link ForkJoinPool}.
+     * @param width
+     * @param height
+     * @param kernel
+     */
+    public static void processRows(int width, int height, RowKernel kernel) {
+        if ((long) width * height <= PARALLEL_THRESHOLD) {
+            kernel.process(0, height);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RowTask(kernel, 0, height, Math.max(1, PARALLEL_THRESHOLD / Math.max(1, width))));
+        }
+    }
+
+    private static void applyCoverage(int[] pixels, int index, float dx, float dy, float radius) {
+        if (dx <= 0 || dy <= 0) {
+            // pixel is not inside of the corner square
+            return;
+        }
+
+        float coverage = radius - (float) Math.sqrt(dx * dx + dy * dy) + 0.5f;
+
+        if (coverage >= 1) {
+            return;
+        }
+
+        int pixel = pixels[index];
+        int alpha = coverage <= 0 ? 0 : (int) ((pixel >>> 24) * coverage + 0.5f);
+        pixels[index] = (alpha << 24) | (pixel & 0x00FFFFFF);
+    }
+
+    /**
+     * Kernel, which processes a range of rows of an image
+     */
+    public interface RowKernel {
+
+    	/**
+    	 * @param rowStart first row (inclusive)
+    	 * @param rowEnd last row (exclusive)
+    	 */
+        void process(int rowStart, int rowEnd);
+    }
+
+    /**
+     * Splits a range of rows until it is small enough to be processed by one thread
+     */
+    private static class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RowKernel kernel;
+        private final int rowStart;
+        private final int rowEnd;
+        private final int minRows;
+
+        RowTask(RowKernel kernel, int rowStart, int rowEnd, int minRows) {
+            this.kernel = kernel;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.minRows = minRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (rowEnd - rowStart <= minRows) {
+                kernel.process(rowStart, rowEnd);
+            } else {
+                int middle = (rowStart + rowEnd) >>> 1;
+                invokeAll(new RowTask(kernel, rowStart, middle, minRows), new RowTask(kernel, middle, rowEnd, minRows));
+            }
+        }
+    }
+
+}
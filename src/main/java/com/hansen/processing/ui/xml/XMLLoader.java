@@ -16,10 +16,18 @@ import java.net.URL;
  */
 public class XMLLoader {
 	
-	private static JAXBContext createProcessingUiContext() throws JAXBException {
-		return JAXBContext.newInstance(CheckBox.class, MenuItem.class, TextBlock.class, Grid.class,
-				Button.class, Panel.class, RowDefinition.class, ColumnDefinition.class, StackPanel.class,
-				ViewportContainer.class, TextBox.class, Label.class, ScrollViewer.class);
+	// creating the context is expensive, but it is thread safe and can be shared by all loads
+	private static JAXBContext processingUiContext;
+	
+	private static synchronized JAXBContext createProcessingUiContext() throws JAXBException {
+		if (processingUiContext == null) {
+			processingUiContext = JAXBContext.newInstance(CheckBox.class, MenuItem.class, TextBlock.class, Grid.class,
+					Button.class, Panel.class, RowDefinition.class, ColumnDefinition.class, StackPanel.class,
+					ViewportContainer.class, TextBox.class, Label.class, ScrollViewer.class, VirtualizingStackPanel.class,
+					WrapPanel.class, UniformGrid.class);
+		}
+		
+		return processingUiContext;
 	}
 
 	/**